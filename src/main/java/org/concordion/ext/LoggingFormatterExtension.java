@@ -1,19 +1,21 @@
 package org.concordion.ext;
 
+import java.io.File;
 
 import org.concordion.api.extension.ConcordionExtender;
 import org.concordion.api.extension.ConcordionExtension;
 import org.concordion.ext.loggingFormatter.LoggingFormatterSpecificationListener;
 import org.concordion.logback.LogbackAdaptor;
 import org.concordion.logback.LoggingListener;
-import org.concordion.logback.filter.MarkerFilter;
+import org.concordion.logback.LoggingListenerDispatcher;
 import org.concordion.slf4j.ILoggingAdaptor;
+import org.concordion.slf4j.markers.ArtifactStore;
+import org.concordion.slf4j.markers.ArtifactWriter;
+import org.concordion.slf4j.markers.BaseDataMarker;
 import org.slf4j.LoggerFactory;
 
 import ch.qos.logback.classic.Level;
 import ch.qos.logback.classic.Logger;
-import ch.qos.logback.core.spi.FilterAttachable;
-import ch.qos.logback.core.spi.FilterReply;
 
 /**
  * Formats the footer of the Concordion specification to show a link to the log file that has been created for this test.<br><br>
@@ -84,23 +86,11 @@ public class LoggingFormatterExtension implements ConcordionExtension {
 			listener.setHandleFailureAndThrowableEvents(false);
 		}
 
-		if (logListener instanceof FilterAttachable<?>) {
-			MarkerFilter filter = new MarkerFilter();
-			
-			filter.setThread(Thread.currentThread().getName());
-
-			filter.setMarkers(logListener.getFilterMarkers());
-			filter.setOnMismatch(FilterReply.DENY);
-
-			filter.start();
-			
-			logListener.addFilter(filter);
-		}
-
 		logListener.start();
 
+		// A single dispatcher routes each event to the listeners interested in its markers
 		Logger logger = (Logger) LoggerFactory.getLogger(Logger.ROOT_LOGGER_NAME);
-		logger.addAppender(logListener);
+		LoggingListenerDispatcher.attach(logger).register(logListener, Thread.currentThread().getId());
 		logger.setLevel(Level.ALL);
 		logger.setAdditive(true);
 
@@ -119,4 +109,53 @@ public class LoggingFormatterExtension implements ConcordionExtension {
 		
 		return this;
 	}
+
+	/**
+	 * Screenshots are normally written to file before the log statement that includes them returns.  Setting this to true
+	 * will only capture the screenshot on the test thread and write the file on a background thread, the log file 
+	 * will wait for any outstanding screenshots to be written when it is closed.
+	 * 
+	 * <p>NOTE: This setting applies to all tests running in the JVM.</p>
+	 * 
+	 * @param asynchronousScreenshots Value to set
+	 * @return A self reference
+	 */
+	public LoggingFormatterExtension setAsynchronousScreenshots(boolean asynchronousScreenshots) {
+		ArtifactWriter.setAsynchronous(asynchronousScreenshots);
+		
+		return this;
+	}
+
+	/**
+	 * Screenshots and attachments are normally written to a new file alongside the log file for every log entry.  Setting
+	 * this to true writes them to a shared "artifacts" folder in the root of the Concordion output folder instead, named
+	 * after a hash of their content, so that identical files are only stored once for the whole suite.
+	 * 
+	 * <p>NOTE: This setting applies to all tests running in the JVM.</p>
+	 * 
+	 * @param sharedArtifactStore Value to set
+	 * @return A self reference
+	 */
+	public LoggingFormatterExtension setSharedArtifactStore(boolean sharedArtifactStore) {
+		ArtifactStore.setRoot(sharedArtifactStore ? new File(LogbackAdaptor.getBaseFolder()) : null);
+		
+		return this;
+	}
+
+	/**
+	 * Data and text attachments larger than this number of characters are only partly included in the log, the full
+	 * content is kept in a file alongside the log and loaded by the browser when the entry is expanded.  By default data is
+	 * included in full and text attachments are capped at 64KB.
+	 * 
+	 * <p>NOTE: This setting applies to all tests running in the JVM.</p>
+	 * 
+	 * @param previewLimit Number of characters, 0 for the defaults, or {@link BaseDataMarker#UNLIMITED} to always include the
+	 *        full content in the log
+	 * @return A self reference
+	 */
+	public LoggingFormatterExtension setPreviewLimit(int previewLimit) {
+		BaseDataMarker.setPreviewLimit(previewLimit);
+		
+		return this;
+	}
 }
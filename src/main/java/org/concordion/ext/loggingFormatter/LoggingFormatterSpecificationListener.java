@@ -12,6 +12,7 @@ import java.util.regex.Matcher;
 import org.apache.commons.io.FileUtils;
 import org.apache.commons.io.IOUtils;
 import org.concordion.api.Element;
+import org.concordion.api.ResultSummary;
 import org.concordion.api.listener.AssertEqualsListener;
 import org.concordion.api.listener.AssertFailureEvent;
 import org.concordion.api.listener.AssertFalseListener;
@@ -24,7 +25,10 @@ import org.concordion.api.listener.SpecificationProcessingListener;
 import org.concordion.api.listener.ThrowableCaughtEvent;
 import org.concordion.api.listener.ThrowableCaughtListener;
 import org.concordion.ext.ScreenshotTaker;
+import org.concordion.logback.html.HTMLFileAppender;
+import org.concordion.slf4j.BaseLoggingAdaptor;
 import org.concordion.slf4j.ILoggingAdaptor;
+import org.concordion.slf4j.ext.BufferFlushPolicy;
 import org.concordion.slf4j.ext.FluentLogger;
 import org.concordion.slf4j.ext.ReportLogger;
 import org.concordion.slf4j.ext.ReportLoggerFactory;
@@ -36,6 +40,7 @@ public class LoggingFormatterSpecificationListener implements SpecificationProce
 	private boolean useLogFileViewer = false;
 	private boolean handleFailureAndThrowableEvents = true;
 	private String testPath = "";
+	private boolean specificationFailed = false;
 			
 	private List<Marker> markers = new ArrayList<Marker>();
 
@@ -71,6 +76,7 @@ public class LoggingFormatterSpecificationListener implements SpecificationProce
 	@Override
 	public void beforeProcessingSpecification(final SpecificationProcessingEvent event) {
 		testPath = event.getResource().getPath();
+		specificationFailed = false;
 
 		loggingAdaptor.startSpecificationLogFile(testPath);
 	}
@@ -78,9 +84,11 @@ public class LoggingFormatterSpecificationListener implements SpecificationProce
 	@Override
 	public void afterProcessingSpecification(final SpecificationProcessingEvent event) {
 		try {
-            File logFile = loggingAdaptor.getLogFile();
-            if (logFile.exists()) {
-                appendLogFileLinkToFooter(event, logFile);
+			LOGGER.writeBufferedMessages(BufferFlushPolicy.EXAMPLE_END);
+			testCompleted(specificationFailed);
+
+            if (loggingAdaptor.logFileExists()) {
+                appendLogFileLinkToFooter(event, loggingAdaptor.getLogFile());
             }
 		} finally {
 			loggingAdaptor.stopLogFile();
@@ -115,9 +123,15 @@ public class LoggingFormatterSpecificationListener implements SpecificationProce
 		}
 	}
 
-	private String createViewer(File logFile) {
+	String createViewer(File logFile) {
 		String logName = logFile.getName();
 
+		// Link to the index page if the log has been split into multiple parts
+		File indexFile = HTMLFileAppender.getIndexFile(logFile);
+		if (indexFile.exists()) {
+			return indexFile.getName();
+		}
+
 		if (!useLogFileViewer) {
 			return logName;
 		}
@@ -211,21 +225,42 @@ public class LoggingFormatterSpecificationListener implements SpecificationProce
 
 	@Override
 	public void beforeExample(ExampleEvent event) {
+		// Anything still buffered belongs to the specification log
+		LOGGER.writeBufferedMessages(BufferFlushPolicy.EXAMPLE_END);
+
 		loggingAdaptor.startExampleLogFile(testPath, event.getExampleName());
 	}
 
 	@Override
 	public void afterExample(ExampleEvent event) {
 		try {
-            File logFile = loggingAdaptor.getLogFile();
-            if (logFile.exists()) {
-                appendLogFileLinkToExample(event, logFile);
+			LOGGER.writeBufferedMessages(BufferFlushPolicy.EXAMPLE_END);
+
+			boolean failed = hasFailed(event.getResultSummary());
+			specificationFailed |= failed;
+			testCompleted(failed);
+
+            if (loggingAdaptor.logFileExists()) {
+                appendLogFileLinkToExample(event, loggingAdaptor.getLogFile());
 			}
 		} finally  {
 			loggingAdaptor.stopLogFile();		
 		}
 	}
 	
+	/**
+	 * Lets the logging framework know the outcome, logs that are only kept on failure are written or discarded at this point.
+	 */
+	private void testCompleted(boolean failed) {
+		if (loggingAdaptor instanceof BaseLoggingAdaptor) {
+			((BaseLoggingAdaptor) loggingAdaptor).testCompleted(failed);
+		}
+	}
+
+	private boolean hasFailed(ResultSummary summary) {
+		return summary != null && (summary.getFailureCount() > 0 || summary.getExceptionCount() > 0);
+	}
+
 	private void appendLogFileLinkToExample(ExampleEvent event, File log) {
 		String logURL = createViewer(log);
 
@@ -241,6 +276,8 @@ public class LoggingFormatterSpecificationListener implements SpecificationProce
 	
 	@Override
 	public void throwableCaught(ThrowableCaughtEvent event) {
+		specificationFailed = true;
+
 		if (!handleFailureAndThrowableEvents) {
 			return;
 		}
@@ -267,6 +304,8 @@ public class LoggingFormatterSpecificationListener implements SpecificationProce
 	
 	@Override
 	public void failureReported(AssertFailureEvent event) {
+		specificationFailed = true;
+
 		if (!handleFailureAndThrowableEvents) {
 			return;
 		}
@@ -0,0 +1,19 @@
+package org.concordion.ext;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Writes the content of an attachment straight to the file it is being saved to, so that large attachments do not have
+ * to be held in memory.
+ */
+public interface AttachmentStreamer {
+
+	/**
+	 * Write the attachment to the given output stream. The stream is buffered and is closed once this method returns.
+	 * 
+	 * @param outputStream Stream to write the attachment to
+	 * @throws IOException if an I/O error occurs writing the attachment to the stream
+	 */
+	void streamTo(OutputStream outputStream) throws IOException;
+}
@@ -0,0 +1,20 @@
+package org.concordion.ext;
+
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * Writes the content of a text attachment straight to the file it is being saved to, so that large attachments do not
+ * have to be held in memory.
+ */
+public interface AttachmentWriter {
+
+	/**
+	 * Write the attachment to the given writer. The writer is buffered, encodes text as UTF-8 and is closed once this
+	 * method returns.
+	 * 
+	 * @param writer Writer to write the attachment to
+	 * @throws IOException if an I/O error occurs writing the attachment
+	 */
+	void writeTo(Writer writer) throws IOException;
+}
@@ -1,13 +1,25 @@
 package org.concordion.logback;
 
 import java.io.File;
+import java.util.Iterator;
 import java.util.Stack;
 
-import org.concordion.slf4j.ILoggingAdaptor;
+import org.concordion.logback.html.HTMLFileAppender;
+import org.concordion.logback.html.HTMLLayout;
+import org.concordion.slf4j.BaseLoggingAdaptor;
+import org.concordion.slf4j.markers.ArtifactAllocator;
+import org.concordion.slf4j.markers.ArtifactWriter;
 import org.slf4j.LoggerFactory;
 import org.slf4j.MDC;
 
+import ch.qos.logback.classic.Logger;
 import ch.qos.logback.classic.LoggerContext;
+import ch.qos.logback.classic.sift.SiftingAppender;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.core.Appender;
+import ch.qos.logback.core.FileAppender;
+import ch.qos.logback.core.encoder.Encoder;
+import ch.qos.logback.core.encoder.LayoutWrappingEncoder;
 import ch.qos.logback.core.util.StatusPrinter;
 
 // TODO The implementation (and names of some of the interface methods) is tied into Concordion, can we make these a bit more generic?
@@ -17,7 +29,7 @@ import ch.qos.logback.core.util.StatusPrinter;
  * @see <a href="http://logback.qos.ch/manual/appenders.html#SiftingAppender">Sifting Appender</a>
  * @see <a href="http://logback.qos.ch/manual/mdc.html">MDC</a>
  */
-public class LogbackAdaptor implements ILoggingAdaptor
+public class LogbackAdaptor extends BaseLoggingAdaptor
 {
 	public static final String LAYOUT_STYLESHEET = "LAYOUT_STYLESHEET";
 
@@ -31,6 +43,13 @@ public class LogbackAdaptor implements ILoggingAdaptor
 //	private static List<String> specifications = new ArrayList<>();
 //	private static List<String> examples = new ArrayList<>();
 
+	/**
+	 * @return The base output folder used by Concordion, always ends with "/"
+	 */
+	public static String getBaseFolder() {
+		return baseFolder;
+	}
+
 	/**
 	 * print logback's internal status
 	 */
@@ -97,9 +116,18 @@ public class LogbackAdaptor implements ILoggingAdaptor
 	 * 
 	 * If running tests in parallel then this call is essentially redundant as tests started using the Concordion Run command will start on 
 	 * a new thread and MDC maintains a value per thread.
+	 * 
+	 * Waits for any screenshots still being written in the background for the log file before returning.
 	 */
 	@Override
 	public void stopLogFile() {
+		String logFile = getLogFile().getPath();
+
+		if (!logFile.isEmpty()) {
+			ArtifactWriter.flush(logFile);
+			ArtifactAllocator.release(logFile);
+		}
+
 		testStack.pop();
 		
 		if (testStack.isEmpty()) {
@@ -109,11 +137,41 @@ public class LogbackAdaptor implements ILoggingAdaptor
 		}
 	}
 		
+	@Override
+	public void testCompleted(boolean failed) {
+		String currentTest = MDC.get(TEST_NAME);
+		LoggerContext context = (LoggerContext) LoggerFactory.getILoggerFactory();
+		Logger root = context.getLogger(Logger.ROOT_LOGGER_NAME);
+
+		for (Iterator<Appender<ILoggingEvent>> it = root.iteratorForAppenders(); it.hasNext();) {
+			Appender<ILoggingEvent> appender = it.next();
+
+			if (appender instanceof SiftingAppender && currentTest != null && TEST_NAME.equals(((SiftingAppender) appender).getDiscriminatorKey())) {
+				// Only a test that has logged something will have an appender
+				appender = ((SiftingAppender) appender).getAppenderTracker().find(currentTest);
+			}
+
+			if (appender instanceof HTMLFileAppender) {
+				((HTMLFileAppender) appender).testCompleted(failed);
+			}
+		}
+	}
+
 	@Override
 	public boolean logFileExists() {
         return getLogFile().exists();
     }
 
+	/**
+	 * The log file may not have been written yet, for example when it is only kept if the test fails, so the path is
+	 * taken from the file appender for the current test where there is one rather than from the files on disk.
+	 * 
+	 * <p>
+	 * Asking for the path never starts an appender or creates a file. If nothing has been logged for the test yet the
+	 * sifting appender won't have created its file appender, in which case the file naming used by logback-include.xml is
+	 * assumed.
+	 * </p>
+	 */
 	@Override
 	public File getLogFile() {
 		String currentTest = MDC.get(TEST_NAME);
@@ -122,21 +180,62 @@ public class LogbackAdaptor implements ILoggingAdaptor
 			return new File("");
 		}
 		
-		File logFile;
-		
-		logFile = new File(currentTest + "Log.html");
-		if (logFile.exists()) {
-			return logFile;
+		FileAppender<ILoggingEvent> appender = findFileAppender(currentTest);
+
+		if (appender != null && appender.getFile() != null) {
+			return new File(appender.getFile());
 		}
+
+		File logFile = new File(currentTest + ".log");
 		
-		logFile = new File(currentTest + ".log");
-		if (logFile.exists()) {
+		if (logFile.exists() && !new File(currentTest + "Log.html").exists()) {
 			return logFile;
 		}
 		
-		return new File("");
+		return new File(currentTest + "Log.html");
 	}
 	
+	/**
+	 * Finds the file appender that a sifting appender keyed on the test name is using for the test, preferring the HTML
+	 * log where there is more than one.
+	 * 
+	 * @return The file appender, or null if there isn't one or the sifting appender has not created it yet
+	 */
+	private static FileAppender<ILoggingEvent> findFileAppender(String testName) {
+		LoggerContext context = (LoggerContext) LoggerFactory.getILoggerFactory();
+		Logger root = context.getLogger(Logger.ROOT_LOGGER_NAME);
+		FileAppender<ILoggingEvent> found = null;
+
+		for (Iterator<Appender<ILoggingEvent>> it = root.iteratorForAppenders(); it.hasNext();) {
+			Appender<ILoggingEvent> appender = it.next();
+
+			if (!(appender instanceof SiftingAppender) || !TEST_NAME.equals(((SiftingAppender) appender).getDiscriminatorKey())) {
+				continue;
+			}
+
+			SiftingAppender sifting = (SiftingAppender) appender;
+			Appender<ILoggingEvent> nested = sifting.getAppenderTracker().find(testName);
+
+			if (nested instanceof FileAppender) {
+				FileAppender<ILoggingEvent> fileAppender = (FileAppender<ILoggingEvent>) nested;
+
+				if (isHtml(fileAppender.getEncoder())) {
+					return fileAppender;
+				}
+
+				if (found == null) {
+					found = fileAppender;
+				}
+			}
+		}
+
+		return found;
+	}
+
+	private static boolean isHtml(Encoder<ILoggingEvent> encoder) {
+		return encoder instanceof LayoutWrappingEncoder && ((LayoutWrappingEncoder<ILoggingEvent>) encoder).getLayout() instanceof HTMLLayout;
+	}
+
 	/**
 	 * Gets the base output folder used by concordion - copied from ConcordionBuilder.getBaseOutputDir()
 	 * 
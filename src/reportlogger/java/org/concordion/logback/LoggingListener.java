@@ -1,7 +1,6 @@
 package org.concordion.logback;
 
-import java.util.Iterator;
-
+import org.concordion.slf4j.markers.MarkerSummary;
 import org.slf4j.Marker;
 
 import ch.qos.logback.classic.spi.ILoggingEvent;
@@ -51,31 +50,10 @@ public abstract class LoggingListener extends AppenderBase<ILoggingEvent> {
 	public abstract boolean getHandleFailureAndThrowableEvents();
 
 	protected Marker findMarker(Marker reference, String name) {
-		if (reference == null) {
-			return null;
-		}
-
-		if (reference.getName().equals(name)) {
-			return reference;
-		}
-		
-		Iterator<Marker> references = reference.iterator();
-		while (references.hasNext()) {
-			Marker found = findMarker(references.next(), name);
-			
-			if (found != null) {
-				return found;
-			}
-		}
-		
-		return null;
+		return MarkerSummary.of(reference).find(name);
 	}
 	
 	protected boolean containsMarker(Marker reference, String name) {
-		if (reference == null) {
-			return false;
-		}
-
-		return reference.contains(name);
+		return MarkerSummary.of(reference).contains(name);
 	}
 }
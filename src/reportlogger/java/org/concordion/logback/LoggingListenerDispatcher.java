@@ -0,0 +1,212 @@
+package org.concordion.logback;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.concordion.slf4j.markers.MarkerSummary;
+import org.slf4j.Marker;
+
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.core.Appender;
+import ch.qos.logback.core.AppenderBase;
+
+/**
+ * Single appender that passes log events on to the registered {@link LoggingListener}s.
+ * 
+ * <p>
+ * Listeners are indexed by the markers returned from {@link LoggingListener#getFilterMarkers()} so that each event is only
+ * offered to the listeners interested in one of its markers, rather than every listener being an appender on the root
+ * logger that filters every event for itself. Listeners that do not supply any markers receive every event.
+ * </p>
+ * 
+ * <p>
+ * A listener only receives events logged on the thread that registered it, so that it does not see log messages from
+ * other tests running in parallel.
+ * </p>
+ */
+public class LoggingListenerDispatcher extends AppenderBase<ILoggingEvent> {
+	public static final String NAME = "LOGGING_LISTENER_DISPATCHER";
+
+	private final List<Registration> registrations = new ArrayList<Registration>();
+	// Rebuilt whenever a listener is registered so that events can be dispatched without locking
+	private volatile Index index = new Index(Collections.<Registration>emptyList());
+
+	public LoggingListenerDispatcher() {
+		setName(NAME);
+	}
+
+	/**
+	 * Finds the dispatcher attached to the logger, attaching a new one if there isn't one.
+	 * 
+	 * @param logger Logger to attach to, normally the root logger
+	 * @return The dispatcher
+	 */
+	public static synchronized LoggingListenerDispatcher attach(Logger logger) {
+		Appender<ILoggingEvent> appender = logger.getAppender(NAME);
+
+		if (appender instanceof LoggingListenerDispatcher && appender.isStarted()) {
+			return (LoggingListenerDispatcher) appender;
+		}
+
+		if (appender != null) {
+			logger.detachAppender(appender);
+		}
+
+		LoggingListenerDispatcher dispatcher = new LoggingListenerDispatcher();
+		dispatcher.setContext(logger.getLoggerContext());
+		dispatcher.start();
+
+		logger.addAppender(dispatcher);
+
+		return dispatcher;
+	}
+
+	/**
+	 * Registers a listener for events logged on the given thread, replacing any earlier registration of the same listener.
+	 * 
+	 * @param listener Listener to register
+	 * @param threadId Id of the thread whose events the listener receives, see {@link Thread#getId()}
+	 */
+	public synchronized void register(LoggingListener listener, long threadId) {
+		removeRegistration(listener);
+
+		registrations.add(new Registration(listener, threadId));
+
+		index = new Index(registrations);
+	}
+
+	/**
+	 * @param listener Listener to stop sending events to
+	 */
+	public synchronized void unregister(LoggingListener listener) {
+		removeRegistration(listener);
+
+		index = new Index(registrations);
+	}
+
+	private void removeRegistration(LoggingListener listener) {
+		for (int i = registrations.size() - 1; i >= 0; i--) {
+			if (registrations.get(i).listener == listener) {
+				registrations.remove(i);
+			}
+		}
+	}
+
+	@Override
+	public void stop() {
+		super.stop();
+
+		List<Registration> stopping;
+
+		synchronized (this) {
+			stopping = new ArrayList<Registration>(registrations);
+		}
+
+		// Listeners used to be attached to the logger directly, so stop them along with the dispatcher as the logger would have
+		for (Registration registration : stopping) {
+			registration.listener.stop();
+		}
+	}
+
+	@Override
+	protected void append(ILoggingEvent event) {
+		Index current = index;
+
+		if (current.isEmpty()) {
+			return;
+		}
+
+		long threadId = Thread.currentThread().getId();
+		List<Registration> delivered = null;
+
+		for (Registration registration : current.catchAll) {
+			delivered = deliver(registration, event, threadId, delivered);
+		}
+
+		if (current.byMarker.isEmpty() || event.getMarker() == null) {
+			return;
+		}
+
+		for (Marker marker : MarkerSummary.of(event.getMarker()).getMarkers()) {
+			List<Registration> interested = current.byMarker.get(marker.getName());
+
+			if (interested == null) {
+				continue;
+			}
+
+			for (Registration registration : interested) {
+				delivered = deliver(registration, event, threadId, delivered);
+			}
+		}
+	}
+
+	/**
+	 * Passes the event to the listener unless it was logged on another thread or the listener has already received it
+	 * because it is interested in more than one of the event's markers.
+	 */
+	private List<Registration> deliver(Registration registration, ILoggingEvent event, long threadId, List<Registration> delivered) {
+		if (registration.threadId != threadId) {
+			return delivered;
+		}
+
+		if (delivered == null) {
+			delivered = new ArrayList<Registration>(2);
+		} else if (delivered.contains(registration)) {
+			return delivered;
+		}
+
+		delivered.add(registration);
+
+		// Any filters the listener has are still applied
+		registration.listener.doAppend(event);
+
+		return delivered;
+	}
+
+	private static class Registration {
+		private final LoggingListener listener;
+		private final long threadId;
+
+		Registration(LoggingListener listener, long threadId) {
+			this.listener = listener;
+			this.threadId = threadId;
+		}
+	}
+
+	private static class Index {
+		private final List<Registration> catchAll = new ArrayList<Registration>();
+		private final Map<String, List<Registration>> byMarker = new HashMap<String, List<Registration>>();
+
+		Index(List<Registration> registrations) {
+			for (Registration registration : registrations) {
+				String[] markers = registration.listener.getFilterMarkers();
+
+				if (markers == null || markers.length == 0) {
+					catchAll.add(registration);
+					continue;
+				}
+
+				for (String marker : markers) {
+					List<Registration> interested = byMarker.get(marker);
+
+					if (interested == null) {
+						interested = new ArrayList<Registration>(2);
+						byMarker.put(marker, interested);
+					}
+
+					if (!interested.contains(registration)) {
+						interested.add(registration);
+					}
+				}
+			}
+		}
+
+		boolean isEmpty() {
+			return catchAll.isEmpty() && byMarker.isEmpty();
+		}
+	}
+}
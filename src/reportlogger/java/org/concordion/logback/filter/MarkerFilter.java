@@ -2,9 +2,13 @@ package org.concordion.logback.filter;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 
+import org.concordion.slf4j.markers.MarkerSummary;
 import org.slf4j.Marker;
+import org.slf4j.helpers.ConcordionMarker;
 
 import ch.qos.logback.classic.spi.ILoggingEvent;
 import ch.qos.logback.core.filter.Filter;
@@ -12,7 +16,10 @@ import ch.qos.logback.core.spi.FilterReply;
 
 public class MarkerFilter extends Filter<ILoggingEvent> {
 	private List<String> filterMarkers = new ArrayList<String>();
+	// Frozen copy of the filter markers that is checked for each event
+	private volatile Set<String> markerSet = null;
 	private String threadName = null;
+	private long threadId = -1;
 
 	protected FilterReply onMatch = FilterReply.NEUTRAL;
 	protected FilterReply onMismatch = FilterReply.NEUTRAL;
@@ -28,6 +35,7 @@ public class MarkerFilter extends Filter<ILoggingEvent> {
 		}
 
 		this.filterMarkers.addAll(Arrays.asList(markers));
+		this.markerSet = null;
 	}
 
 // TODO JUnit giving "Warning: Class 'org.concordion.logback.filter.MarkerFilter' contains multiple setters for the same property 'onMatch'." 
@@ -58,10 +66,12 @@ public class MarkerFilter extends Filter<ILoggingEvent> {
 		}
 
 		this.filterMarkers.add(marker);
+		this.markerSet = null;
 	}
 
 	public void clearMarkers() {
 		this.filterMarkers.clear();
+		this.markerSet = null;
 	}
 
 	/**
@@ -73,32 +83,81 @@ public class MarkerFilter extends Filter<ILoggingEvent> {
 		this.threadName = name;
 	}
 
+	/**
+	 * Sets the id of the thread to filter by, this is cheaper to check than the thread name and takes precedence over it.
+	 * 
+	 * @param id Thread id, see {@link Thread#getId()}
+	 */
+	public void setThreadId(long id) {
+		this.threadId = id;
+	}
+
+	@Override
+	public void start() {
+		freezeMarkers();
+
+		super.start();
+	}
+
+	private Set<String> freezeMarkers() {
+		Set<String> frozen = new HashSet<String>(filterMarkers);
+
+		markerSet = frozen;
+
+		return frozen;
+	}
+
 	@Override
 	public FilterReply decide(ILoggingEvent event) {
-		if (threadName != null && !threadName.isEmpty()) {
-			if (!Thread.currentThread().getName().equals(threadName)) {
+		Set<String> markers = markerSet;
+
+		if (markers == null) {
+			// Markers changed since the filter was started
+			markers = freezeMarkers();
+		}
+
+		if (threadId >= 0 || (threadName != null && !threadName.isEmpty())) {
+			if (!isFilteredThread()) {
 				return FilterReply.DENY;
 			}
 
-			if (filterMarkers.isEmpty()) {
+			if (markers.isEmpty()) {
 				return FilterReply.NEUTRAL;
 			}
 		}
 		
-		for (String marker : filterMarkers) {
-			if (containsMarker(event.getMarker(), marker)) {
-				return onMatch;
-			}
+		if (containsAny(event.getMarker(), markers)) {
+			return onMatch;
 		}
 
 		return onMismatch;
 	}
-	
-	private boolean containsMarker(Marker reference, String name) {
-		if (reference == null) {
+
+	private boolean containsAny(Marker marker, Set<String> names) {
+		if (marker == null) {
 			return false;
 		}
 
-		return reference.contains(name);
+		if (marker instanceof ConcordionMarker) {
+			// Summary is cached on the marker so is shared with the appenders
+			return MarkerSummary.of(marker).containsAny(names);
+		}
+
+		// Plain slf4j markers are not worth summarising just to check a name or two
+		for (String name : names) {
+			if (marker.contains(name)) {
+				return true;
+			}
+		}
+
+		return false;
+	}
+
+	private boolean isFilteredThread() {
+		if (threadId >= 0) {
+			return Thread.currentThread().getId() == threadId;
+		}
+
+		return Thread.currentThread().getName().equals(threadName);
 	}
 }
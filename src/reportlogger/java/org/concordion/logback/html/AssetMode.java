@@ -0,0 +1,12 @@
+package org.concordion.logback.html;
+
+/**
+ * Controls how the stylesheet and javascript used by the HTML log are made available to each log file.
+ */
+public enum AssetMode {
+	/** Stylesheet and javascript are embedded in every log file */
+	INLINE,
+	
+	/** Stylesheet and javascript are written once to the root of the Concordion output folder and linked to by each log file */
+	SHARED;
+}
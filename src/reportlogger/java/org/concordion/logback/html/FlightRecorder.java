@@ -0,0 +1,183 @@
+package org.concordion.logback.html;
+
+import java.util.Map;
+
+import org.slf4j.Marker;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.spi.CallerData;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.classic.spi.IThrowableProxy;
+import ch.qos.logback.classic.spi.LoggerContextVO;
+
+/**
+ * Fixed size ring of the most recent events that were held back from the log so they can be written out if an error
+ * occurs.
+ * 
+ * <p>
+ * All slots are allocated up front and reused, recording an event only stores a reference to it. Once full the oldest
+ * event is overwritten. Not thread safe, callers must hold the appender's lock.
+ * </p>
+ */
+final class FlightRecorder {
+	private final RecordedEvent[] ring;
+	private int next = 0;
+	private int size = 0;
+	private long discarded = 0;
+
+	FlightRecorder(int capacity) {
+		ring = new RecordedEvent[capacity];
+
+		for (int i = 0; i < capacity; i++) {
+			ring[i] = new RecordedEvent();
+		}
+	}
+
+	/**
+	 * @param event Event to hold, must already be prepared for deferred processing
+	 * @param includeCallerData If false the location of the logging statement is not captured
+	 */
+	void record(ILoggingEvent event, boolean includeCallerData) {
+		if (size == ring.length) {
+			discarded++;
+		} else {
+			size++;
+		}
+
+		ring[next].set(event, includeCallerData);
+		next = (next + 1) % ring.length;
+	}
+
+	boolean isEmpty() {
+		return size == 0;
+	}
+
+	int size() {
+		return size;
+	}
+
+	/**
+	 * @return Number of events that were overwritten since the recorder was last cleared
+	 */
+	long getDiscarded() {
+		return discarded;
+	}
+
+	/**
+	 * @param index Index of the event, 0 being the oldest held event
+	 * @return The event
+	 */
+	ILoggingEvent get(int index) {
+		if (index < 0 || index >= size) {
+			throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+		}
+
+		return ring[(next - size + index + ring.length) % ring.length];
+	}
+
+	void clear() {
+		for (RecordedEvent slot : ring) {
+			slot.set(null, false);
+		}
+
+		next = 0;
+		size = 0;
+		discarded = 0;
+	}
+
+	/**
+	 * Slot in the ring, wraps the original event so that caller data can be dropped without altering an event that other
+	 * appenders may still be using.
+	 */
+	private static class RecordedEvent implements ILoggingEvent {
+		private ILoggingEvent event;
+		private StackTraceElement[] callerData;
+
+		void set(ILoggingEvent event, boolean includeCallerData) {
+			this.event = event;
+
+			if (event == null) {
+				this.callerData = null;
+			} else {
+				// Caller data is calculated lazily from the current stack so must be captured now if it is wanted at all
+				this.callerData = includeCallerData ? event.getCallerData() : CallerData.EMPTY_CALLER_DATA_ARRAY;
+			}
+		}
+
+		@Override
+		public String getThreadName() {
+			return event.getThreadName();
+		}
+
+		@Override
+		public Level getLevel() {
+			return event.getLevel();
+		}
+
+		@Override
+		public String getMessage() {
+			return event.getMessage();
+		}
+
+		@Override
+		public Object[] getArgumentArray() {
+			return event.getArgumentArray();
+		}
+
+		@Override
+		public String getFormattedMessage() {
+			return event.getFormattedMessage();
+		}
+
+		@Override
+		public String getLoggerName() {
+			return event.getLoggerName();
+		}
+
+		@Override
+		public LoggerContextVO getLoggerContextVO() {
+			return event.getLoggerContextVO();
+		}
+
+		@Override
+		public IThrowableProxy getThrowableProxy() {
+			return event.getThrowableProxy();
+		}
+
+		@Override
+		public StackTraceElement[] getCallerData() {
+			return callerData;
+		}
+
+		@Override
+		public boolean hasCallerData() {
+			return callerData != null && callerData.length > 0;
+		}
+
+		@Override
+		public Marker getMarker() {
+			return event.getMarker();
+		}
+
+		@Override
+		public Map<String, String> getMDCPropertyMap() {
+			return event.getMDCPropertyMap();
+		}
+
+		@Override
+		@Deprecated
+		public Map<String, String> getMdc() {
+			return event.getMdc();
+		}
+
+		@Override
+		public long getTimeStamp() {
+			return event.getTimeStamp();
+		}
+
+		@Override
+		public void prepareForDeferredProcessing() {
+			event.prepareForDeferredProcessing();
+		}
+	}
+}
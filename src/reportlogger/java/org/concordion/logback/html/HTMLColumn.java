@@ -0,0 +1,120 @@
+package org.concordion.logback.html;
+
+import static ch.qos.logback.core.CoreConstants.LINE_SEPARATOR;
+
+import org.concordion.slf4j.markers.HtmlMessageMarker;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.pattern.FileOfCallerConverter;
+import ch.qos.logback.classic.pattern.LevelConverter;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.core.pattern.Converter;
+
+/**
+ * A single column of the HTML log table, compiled once from the layout's converter chain so that
+ * rendering a row does not need to inspect the converters again.
+ */
+final class HTMLColumn {
+	private static final Level[] LEVELS = { Level.ERROR, Level.WARN, Level.INFO, Level.DEBUG, Level.TRACE };
+	private static final String[] LEVEL_CLASSES = { "error", "warn", "info", "debug", "trace" };
+
+	private final Converter<ILoggingEvent> converter;
+	private final String name;
+	private final String headerLabel;
+	private final String openTag;
+	private final String[] levelOpenTags;
+	private final boolean titled;
+	private final boolean htmlCapable;
+
+	HTMLColumn(Converter<ILoggingEvent> converter, String name) {
+		this.converter = converter;
+		this.name = name;
+		this.headerLabel = name == null ? null : name.replaceAll("(.)([A-Z])", "$1&nbsp;$2");
+		this.titled = converter instanceof FileOfCallerConverter;
+		this.htmlCapable = converter instanceof HtmlMessageConverter;
+		this.openTag = "<td class=\"" + name + "\"";
+
+		if (converter instanceof LevelConverter) {
+			levelOpenTags = new String[LEVELS.length];
+
+			for (int i = 0; i < LEVELS.length; i++) {
+				levelOpenTags[i] = "<td class=\"" + name + " " + LEVEL_CLASSES[i] + "\"";
+			}
+		} else {
+			levelOpenTags = null;
+		}
+	}
+
+	/**
+	 * @param level Level of the log event
+	 * @return The lower case css class for the level, shared between all rows of that level
+	 */
+	static String levelClass(Level level) {
+		int index = levelIndex(level);
+
+		return index < 0 ? level.toString().toLowerCase() : LEVEL_CLASSES[index];
+	}
+
+	private static int levelIndex(Level level) {
+		for (int i = 0; i < LEVELS.length; i++) {
+			if (LEVELS[i] == level) {
+				return i;
+			}
+		}
+
+		return -1;
+	}
+
+	String getName() {
+		return name;
+	}
+
+	String getHeaderLabel() {
+		return headerLabel;
+	}
+
+	/**
+	 * Appends this column's cell for the event.
+	 *
+	 * @param buf Buffer to append to
+	 * @param event Log event being rendered
+	 * @param htmlMessage HTML version of the message attached to the event, or null if there isn't one
+	 */
+	void appendTo(StringBuilder buf, ILoggingEvent event, HtmlMessageMarker htmlMessage) {
+		boolean html = htmlCapable && htmlMessage != null;
+		String value;
+
+		if (htmlCapable) {
+			value = ((HtmlMessageConverter) converter).convert(event, htmlMessage);
+		} else {
+			value = converter.convert(event);
+		}
+
+		buf.append(getOpenTag(event.getLevel()));
+
+		if (titled) {
+			buf.append(" title=\"").append(value).append("\"");
+		}
+
+		buf.append(">");
+
+		if (html) {
+			buf.append(value);
+		} else {
+			TransformText.escapeHtml(value, buf);
+		}
+
+		buf.append("</td>");
+		buf.append(LINE_SEPARATOR);
+	}
+
+	private String getOpenTag(Level level) {
+		if (levelOpenTags == null) {
+			return openTag;
+		}
+
+		int index = levelIndex(level);
+
+		return index < 0 ? openTag.substring(0, openTag.length() - 1) + " " + levelClass(level) + "\"" : levelOpenTags[index];
+	}
+}
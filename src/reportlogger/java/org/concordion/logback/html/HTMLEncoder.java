@@ -0,0 +1,178 @@
+package org.concordion.logback.html;
+
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CodingErrorAction;
+
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.core.encoder.LayoutWrappingEncoder;
+
+/**
+ * Encoder for the HTML log that formats each event directly into a buffer that is reused from one event to the
+ * next, rather than building a new StringBuilder, String and byte array for every row.
+ *
+ * <p>
+ * The encoder owns a single buffer, calls to encode are synchronised so it remains safe to use from appenders that
+ * encode outside their own lock. The buffer is released when the encoder is stopped. Falls back to the standard
+ * behaviour if the layout is not an {@link HTMLLayout}.
+ * </p>
+ *
+ * <p>
+ * {@link HTMLFileAppender} writes straight from the encoded buffer so the only copy made for each event is the one
+ * needed to hand the characters to the charset encoder, other appenders get a byte array as usual.
+ * </p>
+ *
+ * <pre>
+ * &lt;encoder class="org.concordion.logback.html.HTMLEncoder"&gt;
+ *   &lt;layout class="org.concordion.logback.html.HTMLLayout"&gt;
+ *     ...
+ *   &lt;/layout&gt;
+ * &lt;/encoder&gt;
+ * </pre>
+ */
+public class HTMLEncoder extends LayoutWrappingEncoder<ILoggingEvent> {
+	private static final byte[] EMPTY = new byte[0];
+
+	/** Buffers that grow beyond this (eg for a large attachment) are released rather than held on to */
+	private static final int MAX_RETAINED_CAPACITY = 256 * 1024;
+
+	private EncodeBuffer buffer = null;
+	private byte[] footer = null;
+
+	@Override
+	public synchronized byte[] encode(ILoggingEvent event) {
+		if (!(layout instanceof HTMLLayout)) {
+			return super.encode(event);
+		}
+
+		ByteBuffer bytes = encodeToBuffer(event);
+
+		if (!bytes.hasRemaining()) {
+			return EMPTY;
+		}
+
+		byte[] result = new byte[bytes.remaining()];
+		bytes.get(result);
+		return result;
+	}
+
+	/**
+	 * Encodes the event into the encoder's own buffer, saving the copy to a new byte array that
+	 * {@link #encode(ILoggingEvent)} has to make.
+	 * 
+	 * @param event Event to encode
+	 * @return The encoded event between the buffer's position and limit, this is only valid until the encoder next
+	 *         encodes an event so the caller must hold a lock that serialises calls to the encoder until it has
+	 *         finished with it
+	 */
+	synchronized ByteBuffer encodeToBuffer(ILoggingEvent event) {
+		if (!(layout instanceof HTMLLayout)) {
+			return ByteBuffer.wrap(super.encode(event));
+		}
+
+		EncodeBuffer buffer = getBuffer();
+
+		buffer.start();
+		try {
+			((HTMLLayout) layout).doLayout(event, buffer.chars);
+
+			return buffer.encode();
+		} finally {
+			buffer.clearChars();
+		}
+	}
+
+	@Override
+	public byte[] footerBytes() {
+		// Footer contains no dynamic content so only needs encoding once
+		if (footer == null) {
+			footer = super.footerBytes();
+		}
+
+		return footer;
+	}
+
+	@Override
+	public void stop() {
+		super.stop();
+
+		synchronized (this) {
+			buffer = null;
+		}
+	}
+
+	private EncodeBuffer getBuffer() {
+		if (buffer == null) {
+			buffer = new EncodeBuffer(getCharset() == null ? Charset.defaultCharset() : getCharset());
+		}
+
+		return buffer;
+	}
+
+	private static class EncodeBuffer {
+		private static final int INITIAL_CAPACITY = 1024;
+
+		private final CharsetEncoder encoder;
+		private final StringBuilder chars = new StringBuilder(INITIAL_CAPACITY);
+		private char[] charArray = new char[INITIAL_CAPACITY];
+		private ByteBuffer bytes;
+
+		EncodeBuffer(Charset charset) {
+			// Mirror String.getBytes() which replaces anything it cannot encode
+			this.encoder = charset.newEncoder()
+					.onMalformedInput(CodingErrorAction.REPLACE)
+					.onUnmappableCharacter(CodingErrorAction.REPLACE);
+			this.bytes = ByteBuffer.allocate((int) (INITIAL_CAPACITY * encoder.maxBytesPerChar()));
+		}
+
+		/**
+		 * Releases the byte buffer if the previous event made it grow too large, it can't be released any earlier as
+		 * the caller of {@link HTMLEncoder#encodeToBuffer(ILoggingEvent)} writes from it.
+		 */
+		void start() {
+			if (bytes.capacity() > MAX_RETAINED_CAPACITY) {
+				bytes = ByteBuffer.allocate((int) (INITIAL_CAPACITY * encoder.maxBytesPerChar()));
+			}
+		}
+
+		ByteBuffer encode() {
+			int length = chars.length();
+
+			bytes.clear();
+
+			if (length == 0) {
+				bytes.flip();
+				return bytes;
+			}
+
+			if (charArray.length < length) {
+				charArray = new char[Math.max(length, charArray.length * 2)];
+			}
+			chars.getChars(0, length, charArray, 0);
+
+			int maxBytes = (int) Math.ceil(length * (double) encoder.maxBytesPerChar());
+			if (bytes.capacity() < maxBytes) {
+				bytes = ByteBuffer.allocate(Math.max(maxBytes, bytes.capacity() * 2));
+			}
+
+			encoder.reset();
+			encoder.encode(CharBuffer.wrap(charArray, 0, length), bytes, true);
+			encoder.flush(bytes);
+
+			bytes.flip();
+			return bytes;
+		}
+
+		void clearChars() {
+			if (chars.capacity() > MAX_RETAINED_CAPACITY) {
+				chars.setLength(INITIAL_CAPACITY);
+				chars.trimToSize();
+				charArray = new char[INITIAL_CAPACITY];
+			}
+
+			chars.setLength(0);
+		}
+	}
+}
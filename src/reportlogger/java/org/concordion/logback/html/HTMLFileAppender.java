@@ -0,0 +1,558 @@
+package org.concordion.logback.html;
+
+import static ch.qos.logback.core.CoreConstants.LINE_SEPARATOR;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+import org.apache.commons.io.FileUtils;
+import org.concordion.slf4j.markers.MarkerSummary;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.core.FileAppender;
+import ch.qos.logback.core.Layout;
+import ch.qos.logback.core.encoder.LayoutWrappingEncoder;
+import ch.qos.logback.core.status.ErrorStatus;
+import ch.qos.logback.core.util.FileSize;
+
+/**
+ * File appender for the HTML log that can roll over to a new file once a row or size limit is reached so that
+ * very large logs can still be opened in a browser.
+ * 
+ * <p>
+ * The first file keeps the configured name, subsequent files have "-part2", "-part3" etc appended to the name. Once a log
+ * has been split, an index page with the suffix "-index" is written alongside it listing each part with its time range and
+ * error count.
+ * </p>
+ * 
+ * <pre>
+ * &lt;appender name="FILE-${testname}" class="org.concordion.logback.html.HTMLFileAppender"&gt;
+ *   &lt;file&gt;${testname}Log.html&lt;/file&gt;
+ *   &lt;maxRowsPerFile&gt;50000&lt;/maxRowsPerFile&gt;
+ *   &lt;maxFileSize&gt;20MB&lt;/maxFileSize&gt;
+ *   ...
+ * &lt;/appender&gt;
+ * </pre>
+ * 
+ * <p>
+ * A flight recorder can also be enabled to hold back events below a threshold level. The most recent of these events are
+ * kept in a fixed size buffer and are only written to the log, in a collapsed section just before the error, if an error
+ * is logged. This gives the detail needed to diagnose a failure without the cost of writing it for every passing test.
+ * </p>
+ * 
+ * <pre>
+ * &lt;flightRecorderThreshold&gt;INFO&lt;/flightRecorderThreshold&gt;
+ * &lt;flightRecorderSize&gt;200&lt;/flightRecorderSize&gt;
+ * &lt;includeCallerData&gt;false&lt;/includeCallerData&gt;
+ * </pre>
+ * 
+ * <p>
+ * If writeOnFailure is set the log is held back, in memory until it reaches the spillThreshold and in a temporary file
+ * after that, and is only written if an error is logged or the test is reported as failed. Logs for tests that pass are
+ * thrown away without the log file ever being created.
+ * </p>
+ * 
+ * <pre>
+ * &lt;writeOnFailure&gt;true&lt;/writeOnFailure&gt;
+ * &lt;spillThreshold&gt;1MB&lt;/spillThreshold&gt;
+ * </pre>
+ */
+public class HTMLFileAppender extends FileAppender<ILoggingEvent> {
+	static final String PART_SUFFIX = "-part";
+	static final String INDEX_SUFFIX = "-index";
+
+	private long maxRowsPerFile = 0;
+	private FileSize maxFileSize = null;
+
+	private final List<LogPart> parts = new ArrayList<LogPart>();
+	private LogPart currentPart = null;
+
+	private Level flightRecorderThreshold = null;
+	private int flightRecorderSize = 200;
+	private boolean includeCallerData = false;
+	private FlightRecorder flightRecorder = null;
+
+	private boolean writeOnFailure = false;
+	private FileSize spillThreshold = new FileSize(FileSize.MB_COEFFICIENT);
+
+	/**
+	 * @param value Maximum number of log entries to write to each file, 0 (the default) for no limit
+	 */
+	public void setMaxRowsPerFile(long value) {
+		this.maxRowsPerFile = value;
+	}
+
+	public long getMaxRowsPerFile() {
+		return maxRowsPerFile;
+	}
+
+	/**
+	 * @param value Approximate maximum size of each file, eg 20MB, not set by default
+	 */
+	public void setMaxFileSize(FileSize value) {
+		this.maxFileSize = value;
+	}
+
+	public FileSize getMaxFileSize() {
+		return maxFileSize;
+	}
+
+	/**
+	 * @param value Events below this level are only written to the log if an error follows them, not set by default
+	 */
+	public void setFlightRecorderThreshold(String value) {
+		this.flightRecorderThreshold = (value == null || value.trim().isEmpty()) ? null : Level.toLevel(value.trim(), null);
+
+		if (this.flightRecorderThreshold == null && value != null && !value.trim().isEmpty()) {
+			addWarn("Unknown flightRecorderThreshold " + value + ", flight recorder will be disabled");
+		}
+	}
+
+	public String getFlightRecorderThreshold() {
+		return flightRecorderThreshold == null ? null : flightRecorderThreshold.toString();
+	}
+
+	/**
+	 * @param value Maximum number of held back events to keep, older events are discarded (default 200)
+	 */
+	public void setFlightRecorderSize(int value) {
+		this.flightRecorderSize = value;
+	}
+
+	public int getFlightRecorderSize() {
+		return flightRecorderSize;
+	}
+
+	/**
+	 * @param value If true the file and line of held back events is captured, this is costly so is false by default
+	 */
+	public void setIncludeCallerData(boolean value) {
+		this.includeCallerData = value;
+	}
+
+	public boolean isIncludeCallerData() {
+		return includeCallerData;
+	}
+
+	/**
+	 * @param value If true the log file is only written if the test fails, false by default
+	 */
+	public void setWriteOnFailure(boolean value) {
+		this.writeOnFailure = value;
+	}
+
+	public boolean isWriteOnFailure() {
+		return writeOnFailure;
+	}
+
+	/**
+	 * @param value When writing on failure, the amount of the log to hold in memory before moving it to a temporary file (default 1MB)
+	 */
+	public void setSpillThreshold(FileSize value) {
+		this.spillThreshold = value;
+	}
+
+	public FileSize getSpillThreshold() {
+		return spillThreshold;
+	}
+
+	/**
+	 * Returns the index page for the log file, the index page only exists if the log has been split into multiple parts.
+	 * 
+	 * @param logFile The log file
+	 * @return The index file
+	 */
+	public static File getIndexFile(File logFile) {
+		return new File(logFile.getParentFile(), insertSuffix(logFile.getName(), INDEX_SUFFIX));
+	}
+
+	@Override
+	public void start() {
+		if (isPrudent() && isRolling()) {
+			addWarn("Log files cannot be split into parts in prudent mode, maxRowsPerFile and maxFileSize will be ignored");
+			maxRowsPerFile = 0;
+			maxFileSize = null;
+		}
+
+		if (writeOnFailure && isPrudent()) {
+			addWarn("Logs cannot be held back in prudent mode, writeOnFailure will be ignored");
+			writeOnFailure = false;
+		}
+
+		if (writeOnFailure && isRolling()) {
+			addWarn("Logs that are only written on failure cannot be split into parts, maxRowsPerFile and maxFileSize will be ignored");
+			maxRowsPerFile = 0;
+			maxFileSize = null;
+		}
+
+		parts.clear();
+		currentPart = null;
+		flightRecorder = null;
+
+		if (flightRecorderThreshold != null) {
+			if (flightRecorderSize > 0) {
+				flightRecorder = new FlightRecorder(flightRecorderSize);
+			} else {
+				addWarn("flightRecorderSize must be greater than 0, flight recorder will be disabled");
+			}
+		}
+
+		super.start();
+
+		if (isStarted() && !isAppend()) {
+			// Remove any index left over from a previous run so that the log is not linked to stale parts
+			FileUtils.deleteQuietly(getIndexFile(new File(getFile())));
+		}
+	}
+
+	@Override
+	public void openFile(String fileName) throws IOException {
+		if (writeOnFailure) {
+			openPendingFile(fileName);
+		} else {
+			super.openFile(fileName);
+		}
+
+		currentPart = new LogPart(new File(fileName).getName());
+		parts.add(currentPart);
+	}
+
+	@Override
+	public void stop() {
+		super.stop();
+
+		if (parts.size() > 1) {
+			writeIndex();
+		}
+	}
+
+	/**
+	 * Called with the outcome of the specification or example being logged, a log held back by writeOnFailure is
+	 * written out if it failed and thrown away if it passed.
+	 * 
+	 * @param failed Whether the test failed
+	 */
+	public void testCompleted(boolean failed) {
+		if (!isStarted()) {
+			return;
+		}
+
+		lock.lock();
+		try {
+			recordTestResult(failed);
+		} catch (IOException ioe) {
+			this.started = false;
+			addStatus(new ErrorStatus("IO failure in appender", this, ioe));
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	@Override
+	protected void subAppend(ILoggingEvent event) {
+		if (!isStarted()) {
+			return;
+		}
+
+		try {
+			event.prepareForDeferredProcessing();
+
+			MarkerSummary markers = MarkerSummary.of(event.getMarker());
+
+			if (isHeldBack(event, markers)) {
+				lock.lock();
+				try {
+					flightRecorder.record(event, includeCallerData);
+				} finally {
+					lock.unlock();
+				}
+				return;
+			}
+
+			// Unlike OutputStreamAppender the event is encoded under the lock, the layout numbers the rows and remembers
+			// which stack traces it has written so events from different threads must not be encoded at the same time
+			lock.lock();
+			try {
+				if (flightRecorder != null && event.getLevel() == Level.ERROR && !flightRecorder.isEmpty()) {
+					// Written before the error is encoded so that row numbers stay in order
+					writeRecordedEvents();
+				}
+
+				ByteBuffer bytes = encode(event);
+
+				if (bytes == null || !bytes.hasRemaining()) {
+					return;
+				}
+
+				if (isRolloverRequired()) {
+					rollover();
+				}
+
+				if (event.getLevel() == Level.ERROR) {
+					commitPendingFile();
+				}
+
+				writeBytes(bytes);
+				currentPart.record(event, bytes.remaining());
+
+				if (parts.size() > 1 && event.getLevel() == Level.ERROR) {
+					// Keep the error counts on the index up to date as the appender may not be stopped until the JVM exits
+					writeIndex();
+				}
+			} finally {
+				lock.unlock();
+			}
+		} catch (IOException ioe) {
+			this.started = false;
+			addStatus(new ErrorStatus("IO failure in appender", this, ioe));
+		}
+	}
+
+	/**
+	 * The HTML encoder hands back its own buffer rather than a copy of it, which is only good until it encodes another
+	 * event so must be called and written out under the lock.
+	 */
+	private ByteBuffer encode(ILoggingEvent event) {
+		if (encoder instanceof HTMLEncoder) {
+			return ((HTMLEncoder) encoder).encodeToBuffer(event);
+		}
+
+		byte[] bytes = encoder.encode(event);
+
+		return bytes == null ? null : ByteBuffer.wrap(bytes);
+	}
+
+	private void writeBytes(ByteBuffer bytes) throws IOException {
+		OutputStream out = getOutputStream();
+
+		out.write(bytes.array(), bytes.arrayOffset() + bytes.position(), bytes.remaining());
+
+		if (isImmediateFlush()) {
+			out.flush();
+		}
+	}
+
+	private boolean isHeldBack(ILoggingEvent event, MarkerSummary markers) {
+		if (flightRecorder == null || event.getLevel().isGreaterOrEqual(flightRecorderThreshold)) {
+			return false;
+		}
+
+		// Steps give the log its structure and progress events are never displayed so neither are worth holding back
+		return !markers.isStep() && !markers.isProgress();
+	}
+
+	/**
+	 * Writes the held back events as a collapsed section of the log and clears the recorder.
+	 */
+	private void writeRecordedEvents() throws IOException {
+		HTMLLayout layout = getHTMLLayout();
+
+		try {
+			if (layout != null) {
+				StringBuilder buf = new StringBuilder();
+				layout.appendRecordedEventsStart(buf, flightRecorder.size(), flightRecorder.getDiscarded());
+				writeString(buf.toString());
+			}
+
+			for (int i = 0; i < flightRecorder.size(); i++) {
+				ILoggingEvent recorded = flightRecorder.get(i);
+				ByteBuffer bytes = encode(recorded);
+
+				if (bytes != null && bytes.hasRemaining()) {
+					writeBytes(bytes);
+					currentPart.record(recorded, bytes.remaining());
+				}
+			}
+
+			if (layout != null) {
+				StringBuilder buf = new StringBuilder();
+				layout.appendRecordedEventsEnd(buf);
+				writeString(buf.toString());
+			}
+		} finally {
+			flightRecorder.clear();
+		}
+	}
+
+	private HTMLLayout getHTMLLayout() {
+		if (encoder instanceof LayoutWrappingEncoder) {
+			Layout<ILoggingEvent> layout = ((LayoutWrappingEncoder<ILoggingEvent>) encoder).getLayout();
+
+			if (layout instanceof HTMLLayout) {
+				return (HTMLLayout) layout;
+			}
+		}
+
+		return null;
+	}
+
+	private void writeString(String value) throws IOException {
+		Charset charset = null;
+
+		if (encoder instanceof LayoutWrappingEncoder) {
+			charset = ((LayoutWrappingEncoder<ILoggingEvent>) encoder).getCharset();
+		}
+
+		writeBytes(ByteBuffer.wrap(value.getBytes(charset == null ? Charset.defaultCharset() : charset)));
+	}
+
+	private void openPendingFile(String fileName) {
+		File file = new File(fileName);
+
+		if (!isAppend()) {
+			// A log left over from a previous run would otherwise be linked to from a test that passed
+			FileUtils.deleteQuietly(file);
+		}
+
+		setOutputStream(new PendingLogOutputStream(file, isAppend(), (int) Math.min(Integer.MAX_VALUE, spillThreshold.getSize())));
+	}
+
+	private void commitPendingFile() throws IOException {
+		OutputStream out = getOutputStream();
+
+		if (out instanceof PendingLogOutputStream) {
+			((PendingLogOutputStream) out).commit();
+		}
+	}
+
+	private void recordTestResult(boolean failed) throws IOException {
+		if (failed) {
+			commitPendingFile();
+			return;
+		}
+
+		if (flightRecorder != null) {
+			// Nothing went wrong so the detail will never be needed
+			flightRecorder.clear();
+		}
+
+		OutputStream out = getOutputStream();
+
+		if (out instanceof PendingLogOutputStream && !((PendingLogOutputStream) out).isCommitted()) {
+			// Replacing the stream throws away everything held so far and starts again with a new header
+			parts.clear();
+			openFile(getFile());
+		}
+	}
+
+	private boolean isRolling() {
+		return maxRowsPerFile > 0 || maxFileSize != null;
+	}
+
+	private boolean isRolloverRequired() {
+		if (currentPart == null || currentPart.rows == 0) {
+			return false;
+		}
+
+		if (maxRowsPerFile > 0 && currentPart.rows >= maxRowsPerFile) {
+			return true;
+		}
+
+		return maxFileSize != null && currentPart.bytes >= maxFileSize.getSize();
+	}
+
+	private void rollover() throws IOException {
+		String partName = insertSuffix(getFile(), PART_SUFFIX + (parts.size() + 1));
+
+		// Opening the new file closes the current one, writing the footer to it
+		openFile(partName);
+
+		writeIndex();
+	}
+
+	private void writeIndex() {
+		File logFile = new File(getFile());
+		File indexFile = getIndexFile(logFile);
+
+		StringBuilder sb = new StringBuilder();
+		SimpleDateFormat format = new SimpleDateFormat("HH:mm:ss.SSS");
+		long firstRow = 1;
+
+		sb.append("<!DOCTYPE html>").append(LINE_SEPARATOR);
+		sb.append("<html>").append(LINE_SEPARATOR);
+		sb.append("<head>").append(LINE_SEPARATOR);
+		sb.append("<title>").append(logFile.getName()).append("</title>").append(LINE_SEPARATOR);
+		sb.append("<style type=\"text/css\">").append(LINE_SEPARATOR);
+		sb.append("body { font-family: Arial, Helvetica, verdana sans-serif; font-size: 0.9em; }").append(LINE_SEPARATOR);
+		sb.append("table { border-collapse: collapse; }").append(LINE_SEPARATOR);
+		sb.append("th, td { border: 1px solid #ccc; padding: 4px 8px; text-align: left; }").append(LINE_SEPARATOR);
+		sb.append("td.errors { color: #993300; font-weight: bold; }").append(LINE_SEPARATOR);
+		sb.append("</style>").append(LINE_SEPARATOR);
+		sb.append("</head>").append(LINE_SEPARATOR);
+		sb.append("<body>").append(LINE_SEPARATOR);
+		sb.append("<h1>").append(logFile.getName()).append("</h1>").append(LINE_SEPARATOR);
+		sb.append("<table>").append(LINE_SEPARATOR);
+		sb.append("<tr><th>Part</th><th>Rows</th><th>From</th><th>To</th><th>Errors</th></tr>").append(LINE_SEPARATOR);
+
+		for (int i = 0; i < parts.size(); i++) {
+			LogPart part = parts.get(i);
+			boolean active = (part == currentPart && isStarted());
+
+			sb.append("<tr>");
+			sb.append("<td><a href=\"").append(part.fileName).append("\">Part ").append(i + 1).append("</a></td>");
+			sb.append("<td>").append(firstRow).append(" - ").append(active ? "" : String.valueOf(firstRow + part.rows - 1)).append("</td>");
+			sb.append("<td>").append(part.rows == 0 ? "" : format.format(new Date(part.firstTimestamp))).append("</td>");
+			sb.append("<td>").append(active || part.rows == 0 ? "" : format.format(new Date(part.lastTimestamp))).append("</td>");
+			sb.append("<td").append(part.errors > 0 ? " class=\"errors\"" : "").append(">").append(part.errors).append("</td>");
+			sb.append("</tr>").append(LINE_SEPARATOR);
+
+			firstRow += part.rows;
+		}
+
+		sb.append("</table>").append(LINE_SEPARATOR);
+		sb.append("</body>").append(LINE_SEPARATOR);
+		sb.append("</html>").append(LINE_SEPARATOR);
+
+		try {
+			FileUtils.writeStringToFile(indexFile, sb.toString(), StandardCharsets.UTF_8);
+		} catch (IOException e) {
+			addError("Unable to write log index " + indexFile, e);
+		}
+	}
+
+	private static String insertSuffix(String fileName, String suffix) {
+		int pos = fileName.lastIndexOf('.');
+
+		if (pos > 0 && pos > fileName.lastIndexOf('/') && pos > fileName.lastIndexOf('\\')) {
+			return fileName.substring(0, pos) + suffix + fileName.substring(pos);
+		}
+
+		return fileName + suffix;
+	}
+
+	private static class LogPart {
+		private final String fileName;
+		private long rows = 0;
+		private long bytes = 0;
+		private long errors = 0;
+		private long firstTimestamp;
+		private long lastTimestamp;
+
+		LogPart(String fileName) {
+			this.fileName = fileName;
+		}
+
+		void record(ILoggingEvent event, int length) {
+			if (rows == 0) {
+				firstTimestamp = event.getTimeStamp();
+			}
+
+			rows++;
+			bytes += length;
+			lastTimestamp = event.getTimeStamp();
+
+			if (event.getLevel() == Level.ERROR) {
+				errors++;
+			}
+		}
+	}
+}
@@ -4,9 +4,10 @@ import static ch.qos.logback.core.CoreConstants.LINE_SEPARATOR;
 
 import java.io.IOException;
 import java.io.InputStream;
-import java.lang.reflect.Field;
 import java.nio.charset.StandardCharsets;
-import java.util.Iterator;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 import org.apache.commons.io.IOUtils;
@@ -14,19 +15,15 @@ import org.concordion.logback.LogbackAdaptor;
 import org.concordion.slf4j.markers.BaseDataMarker;
 import org.concordion.slf4j.markers.DataMarker;
 import org.concordion.slf4j.markers.HtmlMessageMarker;
-import org.concordion.slf4j.markers.ReportLoggerMarkers;
+import org.concordion.slf4j.markers.MarkerSummary;
 import org.slf4j.LoggerFactory;
-import org.slf4j.Marker;
-import org.slf4j.helpers.MessageFormatter;
+import org.slf4j.MDC;
 
 import ch.qos.logback.classic.LoggerContext;
 import ch.qos.logback.classic.PatternLayout;
 import ch.qos.logback.classic.pattern.DateConverter;
-import ch.qos.logback.classic.pattern.FileOfCallerConverter;
-import ch.qos.logback.classic.pattern.LevelConverter;
 import ch.qos.logback.classic.pattern.MDCConverter;
 import ch.qos.logback.classic.spi.ILoggingEvent;
-import ch.qos.logback.core.helpers.Transform;
 import ch.qos.logback.core.html.HTMLLayoutBase;
 import ch.qos.logback.core.html.IThrowableRenderer;
 import ch.qos.logback.core.pattern.Converter;
@@ -52,10 +49,26 @@ public class HTMLLayout extends HTMLLayoutBase<ILoggingEvent> {
      */
     static final String DEFAULT_CONVERSION_PATTERN = "%date{HH:mm:ss.SSS}%logger{30}%level%message";
 
+    /**
+     * PatternLayout's converters with the message converters replaced by one that understands HTML messages.
+     */
+    private static final Map<String, String> CONVERTER_MAP = new HashMap<String, String>(PatternLayout.defaultConverterMap);
+
+    static {
+    	CONVERTER_MAP.put("m", HtmlMessageConverter.class.getName());
+    	CONVERTER_MAP.put("msg", HtmlMessageConverter.class.getName());
+    	CONVERTER_MAP.put("message", HtmlMessageConverter.class.getName());
+    }
+
     private IThrowableRenderer<ILoggingEvent> throwableRenderer;
     private StepRecorder stepRecorder = StepRecorder.STEP_MARKER;
 	private int columnCount;
 	private String stylesheet = "";
+	private AssetMode assets = AssetMode.INLINE;
+	private boolean lazyStackTraces = false;
+	private String foldFramePackages = null;
+	private PackagePrefixTrie foldedPackages = null;
+	private HTMLColumn[] columns = new HTMLColumn[0];
 	
     /**
      * Constructs a PatternLayout using the DEFAULT_LAYOUT_PATTERN.
@@ -85,6 +98,49 @@ public class HTMLLayout extends HTMLLayoutBase<ILoggingEvent> {
 		return stylesheet;
 	}
 
+	/**
+	 * Set whether the stylesheet and javascript are embedded in each log file (INLINE, the default) or written once to the 
+	 * Concordion output folder and linked to from each log file (SHARED).
+	 * 
+	 * @param value One of the values of {@link AssetMode}
+	 */
+	public void setAssets(String value) {
+		assets = AssetMode.valueOf(value);
+	}
+
+	public String getAssets() {
+		return assets.name();
+	}
+
+	/**
+	 * Set whether stack traces are written as plain text that the browser only turns into page content when "View Stack"
+	 * is clicked, rather than as hidden page content, so that logs holding many exceptions open quickly.
+	 * 
+	 * @param value Value to set
+	 */
+	public void setLazyStackTraces(boolean value) {
+		lazyStackTraces = value;
+	}
+
+	public boolean isLazyStackTraces() {
+		return lazyStackTraces;
+	}
+
+	/**
+	 * Set the packages, eg "org.junit.*, sun.reflect.*", whose frames are left out of stack traces.  Consecutive frames
+	 * from these packages are replaced by a single line giving the number of frames left out.
+	 * 
+	 * @param value Comma separated list of package prefixes
+	 */
+	public void setFoldFramePackages(String value) {
+		foldFramePackages = value;
+		foldedPackages = PackagePrefixTrie.compile(value);
+	}
+
+	public String getFoldFramePackages() {
+		return foldFramePackages;
+	}
+
 	public boolean hasStylesheet() {
 		if (stylesheet == null || stylesheet.isEmpty()) {
 			LoggerContext context = (LoggerContext) LoggerFactory.getILoggerFactory();
@@ -94,10 +150,20 @@ public class HTMLLayout extends HTMLLayoutBase<ILoggingEvent> {
 		return stylesheet != null && !stylesheet.isEmpty();
 	}
 
+    /**
+     * Sets the conversion pattern, if the layout has already been started it is restarted so that the converters and
+     * column plan match the new pattern.
+     */
     @Override
     public void setPattern(String conversionPattern) {
     	super.setPattern(conversionPattern);
     	columnCount = getColumnCount();
+    	columns = new HTMLColumn[0];
+
+    	if (isStarted()) {
+    		stop();
+    		start();
+    	}
 	}
     
     @Override
@@ -109,57 +175,77 @@ public class HTMLLayout extends HTMLLayoutBase<ILoggingEvent> {
         }
         if (errorCount == 0) {
             super.start();
+            columns = compileColumns();
         }
     }
 
+	/**
+	 * Works out everything about the columns that does not depend on the event being logged so that
+	 * {@link #doLayout(ILoggingEvent)} only has to walk the resulting plan.
+	 */
+	private HTMLColumn[] compileColumns() {
+		List<HTMLColumn> plan = new ArrayList<HTMLColumn>();
+
+		Converter<ILoggingEvent> c = head;
+		while (c != null) {
+			plan.add(new HTMLColumn(c, computeConverterName(c)));
+			c = c.getNext();
+		}
+
+		return plan.toArray(new HTMLColumn[plan.size()]);
+	}
+
     protected Map<String, String> getDefaultConverterMap() {
-        return PatternLayout.defaultConverterMap;
+        return CONVERTER_MAP;
     }
 
     public String doLayout(ILoggingEvent event) {
-		if (containsMarker(event, ReportLoggerMarkers.PROGRESS_MARKER)) {
-			return "";
+        StringBuilder buf = new StringBuilder();
+        doLayout(event, buf);
+        return buf.toString();
+    }
+
+    /**
+     * Appends the rows for the event to the supplied buffer rather than building a new string, allowing callers
+     * such as {@link HTMLEncoder} to reuse their buffers from one event to the next.
+     * 
+     * @param event Event to format
+     * @param buf Buffer to append to
+     */
+    public void doLayout(ILoggingEvent event, StringBuilder buf) {
+		MarkerSummary markers = MarkerSummary.of(event.getMarker());
+
+		if (markers.isProgress()) {
+			return;
 		}
 
-        StringBuilder buf = new StringBuilder();
         startNewTableIfLimitReached(buf);
 
 		counter++;
 
-		if (containsMarker(event, ReportLoggerMarkers.STEP_MARKER.getName()) || event.getLevel() == stepRecorder.getLevel()) {
+		if (markers.isStep() || event.getLevel() == stepRecorder.getLevel()) {
 			appendStepToBuffer(buf, event);
-        	return buf.toString();
+        	return;
         }
         
-		appendMessageToBuffer(buf, event);
+		appendMessageToBuffer(buf, event, markers.getHtmlMessage());
         
-		if (event.getMarker() != null) {
-			appendData(event.getMarker(), buf, event);
+		for (BaseDataMarker<?> data : markers.getDataMarkers()) {
+			appendDataToBuffer(buf, event, data);
 		}
 
         if (event.getThrowableProxy() != null) {
         	if (throwableRenderer instanceof HTMLThrowableRenderer) {
         		((HTMLThrowableRenderer) throwableRenderer).setColumnCount(columnCount);
+        		((HTMLThrowableRenderer) throwableRenderer).setEntryNumber(counter);
+        		((HTMLThrowableRenderer) throwableRenderer).setLazy(lazyStackTraces);
+        		((HTMLThrowableRenderer) throwableRenderer).setFoldedPackages(foldedPackages);
         	}
         		
             throwableRenderer.render(buf, event);
         }
-        
-        return buf.toString();
     }
 
-	private void appendData(Marker marker, StringBuilder buf, ILoggingEvent event) {
-		if (marker instanceof BaseDataMarker) {
-			appendDataToBuffer(buf, event, (BaseDataMarker<?>) marker);
-		}
-		
-		Iterator<Marker> references = marker.iterator();
-		
-		while (references.hasNext()) {
-			appendData(references.next(), buf, event);
-		}
-	}
-
 	public void appendStepToBuffer(StringBuilder buf, ILoggingEvent event) {
 		buf.append(LINE_SEPARATOR);
 		buf.append("<tr class=\"record step\">");
@@ -170,7 +256,7 @@ public class HTMLLayout extends HTMLLayoutBase<ILoggingEvent> {
 		if (event.getMarker() instanceof DataMarker) {
 			buf.append(event.getFormattedMessage());
 		} else {
-			buf.append(Transform.escapeTags(event.getFormattedMessage()));
+			TransformText.escapeTags(event.getFormattedMessage(), buf);
 		}
         
 		buf.append("</td>");
@@ -178,86 +264,27 @@ public class HTMLLayout extends HTMLLayoutBase<ILoggingEvent> {
 		buf.append("</tr>");
 	}
 	
-	private String getFormattedMessage(String format, Object[] arguments) {
-		return MessageFormatter.arrayFormat(format, arguments).getMessage();
-	}
-	
-	private void appendMessageToBuffer(StringBuilder buf, ILoggingEvent event) {
-		boolean escapeTags = true;
-		Field field = null;
-		String originalMessage = null;
-		
+	private void appendMessageToBuffer(StringBuilder buf, ILoggingEvent event, HtmlMessageMarker htmlMessage) {
         buf.append(LINE_SEPARATOR);
-		buf.append("<tr class=\"record ").append(event.getLevel().toString().toLowerCase()).append("\">");
+		buf.append("<tr class=\"record ").append(HTMLColumn.levelClass(event.getLevel())).append("\">");
         buf.append(LINE_SEPARATOR);
 		buf.append("<td>").append(counter).append(".</td>");
-		
-		if (containsMarker(event, HtmlMessageMarker.MARKER_NAME)) {
-			// Replace plain log message with HTML formatted version 
-			escapeTags = false;
-			
-			HtmlMessageMarker marker = (HtmlMessageMarker) getMarker(event.getMarker(), HtmlMessageMarker.MARKER_NAME);
-			
-			try {
-				originalMessage = event.getFormattedMessage();
-				
-				field = event.getClass().getDeclaredField("formattedMessage");
-				field.setAccessible(true);
-				field.set(event, getFormattedMessage(marker.getFormat(), marker.getArguments()));
-			} catch (Throwable e) {
-				// Silently ignore
-			}
-		}
 
-		Converter<ILoggingEvent> c = head;
-		while (c != null) {
-			appendEventToBuffer(buf, c, event, escapeTags);
-			c = c.getNext();
-		}
-        
-		if (field != null) {
-			try {
-				field.set(event, originalMessage);
-			} catch (Throwable e) {
-				// Silently ignore
-			}
+		// Message column will render the HTML formatted version of the message in place of the plain message 
+		for (HTMLColumn column : columns) {
+			column.appendTo(buf, event, htmlMessage);
 		}
 		
         buf.append("</tr>");
 	}
 
-	private void appendEventToBuffer(StringBuilder buf, Converter<ILoggingEvent> c, ILoggingEvent event, boolean escapeTags) {
-		String name = computeConverterName(c);
-		
-        buf.append("<td class=\"");
-        buf.append(name);
-
-		if (c instanceof LevelConverter) {
-        	buf.append(" ").append(event.getLevel().toString().toLowerCase());	
-        }
-		buf.append("\"");
-
-		if (c instanceof FileOfCallerConverter) {
-			buf.append(" title=\"").append(c.convert(event)).append("\"");
-		}
-
-		buf.append(">");
-		if (escapeTags) {
-			buf.append(TransformText.escapeText(Transform.escapeTags(c.convert(event))));
-		} else {
-			buf.append(c.convert(event));
-		}
-        buf.append("</td>");
-        buf.append(LINE_SEPARATOR);
-    }
-	
 	public void appendDataToBuffer(StringBuilder buf, ILoggingEvent event, BaseDataMarker<?> data) {
 		if (!data.hasData()) {
 			return;
 		}
 
 		buf.append(LINE_SEPARATOR);
-		buf.append("<tr class=\"companion ").append(event.getLevel().toString().toLowerCase()).append("\">");
+		buf.append("<tr class=\"companion ").append(HTMLColumn.levelClass(event.getLevel())).append("\">");
 		buf.append(LINE_SEPARATOR);
 		buf.append("<td class=\"indent\"></td><td colspan=\"").append(columnCount).append("\" class=\"output\">");
 		
@@ -276,6 +303,42 @@ public class HTMLLayout extends HTMLLayoutBase<ILoggingEvent> {
 		buf.append("</tr>");
 	}
 
+	/**
+	 * Appends a row that expands a hidden section holding events that were held back from the log, the events are
+	 * written after this and the section closed with {@link #appendRecordedEventsEnd(StringBuilder)}.
+	 * 
+	 * @param buf Buffer to append to
+	 * @param count Number of events that will be written to the section
+	 * @param discarded Number of older events that were not kept
+	 */
+	public void appendRecordedEventsStart(StringBuilder buf, int count, long discarded) {
+		buf.append(LINE_SEPARATOR);
+		buf.append("<tr class=\"flightRecorderToggle\" onclick=\"toggleFlightRecorder(this);\">");
+		buf.append(LINE_SEPARATOR);
+		buf.append("<td colspan=\"").append(columnCount + 1).append("\">");
+		buf.append("<span class=\"flightRecorderAction\">Show</span> ").append(count).append(" earlier ");
+		buf.append(count == 1 ? "entry" : "entries").append(" that were below the log level");
+
+		if (discarded > 0) {
+			buf.append(" (").append(discarded).append(" older not kept)");
+		}
+
+		buf.append("</td>");
+		buf.append(LINE_SEPARATOR);
+		buf.append("</tr>");
+		buf.append(LINE_SEPARATOR);
+		buf.append("</tbody>");
+		buf.append(LINE_SEPARATOR);
+		buf.append("<tbody class=\"flightRecorder\">");
+	}
+
+	public void appendRecordedEventsEnd(StringBuilder buf) {
+		buf.append(LINE_SEPARATOR);
+		buf.append("</tbody>");
+		buf.append(LINE_SEPARATOR);
+		buf.append("<tbody>");
+	}
+
 	public IThrowableRenderer<?> getThrowableRenderer() {
         return throwableRenderer;
     }
@@ -294,6 +357,8 @@ public class HTMLLayout extends HTMLLayoutBase<ILoggingEvent> {
             } else {
                 return "MDC";
             }
+		} else if (c instanceof HtmlMessageConverter) {
+			return "Message";
 		} else if (c instanceof DateConverter) {
 			// Check if format contains only time related date pattern
 			// * http://logback.qos.ch/manual/layouts.html
@@ -312,6 +377,11 @@ public class HTMLLayout extends HTMLLayoutBase<ILoggingEvent> {
 
     @Override
 	public String getFileHeader() {
+		if (throwableRenderer instanceof HTMLThrowableRenderer) {
+			// Repeated stacks refer back to the first one written to the same file
+			((HTMLThrowableRenderer) throwableRenderer).reset();
+		}
+
 		StringBuilder sbuf = new StringBuilder();
 		sbuf.append("<!DOCTYPE html PUBLIC \"-//W3C//DTD XHTML 1.0 Strict//EN\"");
 		sbuf.append(" \"http://www.w3.org/TR/xhtml1/DTD/xhtml1-strict.dtd\">");
@@ -325,8 +395,14 @@ public class HTMLLayout extends HTMLLayoutBase<ILoggingEvent> {
 			sbuf.append("    <link rel=\"stylesheet\" type=\"text/css\" href=\"").append(stylesheet).append("\"/>").append(LINE_SEPARATOR);
 		}
 		
-		sbuf.append(readFile("htmllog.css"));
-		sbuf.append(readFile("htmllog.js"));
+		String assetPath = getSharedAssetPath();
+		if (assetPath == null) {
+			sbuf.append(HtmlAssets.getResource(HtmlAssets.STYLESHEET));
+			sbuf.append(HtmlAssets.getResource(HtmlAssets.SCRIPT));
+		} else {
+			sbuf.append("    <link rel=\"stylesheet\" type=\"text/css\" href=\"").append(assetPath).append(HtmlAssets.STYLESHEET).append("\"/>").append(LINE_SEPARATOR);
+			sbuf.append("    <script type=\"text/javascript\" src=\"").append(assetPath).append(HtmlAssets.SCRIPT).append("\"></script>").append(LINE_SEPARATOR);
+		}
 		// cssBuilder.addCss(sbuf);
 
 		sbuf.append(LINE_SEPARATOR);
@@ -361,26 +437,21 @@ public class HTMLLayout extends HTMLLayoutBase<ILoggingEvent> {
     }
 
     private void buildHeaderRowForTable(StringBuilder sbuf) {
-		Converter<?> c = head;
-        String name;
         sbuf.append("<thead>");
         sbuf.append(LINE_SEPARATOR);
         
 		sbuf.append("<tr><th class=\"Row\">Row</th>");
         sbuf.append(LINE_SEPARATOR);
         
-		while (c != null) {
-			name = computeConverterName(c);
-			if (name == null) {
-				c = c.getNext();
+		for (HTMLColumn column : columns) {
+			if (column.getName() == null) {
 				continue;
 			}
 
-			sbuf.append("<th class=\"").append(name).append("\">");
-			sbuf.append(name.replaceAll("(.)([A-Z])", "$1&nbsp;$2"));
+			sbuf.append("<th class=\"").append(column.getName()).append("\">");
+			sbuf.append(column.getHeaderLabel());
 			sbuf.append("</th>");
 			sbuf.append(LINE_SEPARATOR);
-			c = c.getNext();
         }
         
         sbuf.append("</tr>");
@@ -390,45 +461,36 @@ public class HTMLLayout extends HTMLLayoutBase<ILoggingEvent> {
         sbuf.append("<tbody>");
     }
 
-	private boolean containsMarker(ILoggingEvent event, Marker marker) {
-		if (event.getMarker() == null) {
-			return false;
-		}
-
-		return event.getMarker().contains(marker);
+	private int getColumnCount() {
+		return pattern.length() - pattern.replace("%", "").length();
 	}
 
-	private boolean containsMarker(ILoggingEvent event, String name) {
-		if (event.getMarker() == null) {
-			return false;
+	/**
+	 * When using shared assets, ensures the assets exist in the base output folder and returns the relative path to them. 
+	 * 
+	 * @return Relative path to the shared assets or null if assets are to be embedded in the log file
+	 */
+	private String getSharedAssetPath() {
+		if (assets != AssetMode.SHARED) {
+			return null;
 		}
-		
-		return event.getMarker().contains(name);
-	}
 
-	private Marker getMarker(Marker reference, String name) {
-		if (reference == null) {
+		// The log file header is written on the thread that first logs to the file so MDC holds the log file location
+		String baseFolder = LogbackAdaptor.getBaseFolder();
+		String path = HtmlAssets.getRelativePathToBase(baseFolder, MDC.get(LogbackAdaptor.TEST_NAME));
+
+		if (path == null) {
 			return null;
 		}
 
-		if (reference.getName().equals(name)) {
-			return reference;
-		}
-		
-		Iterator<Marker> references = reference.iterator();
-		while (references.hasNext()) {
-			Marker found = getMarker(references.next(), name);
-			
-			if (found != null) {
-				return found;
-			}
+		try {
+			HtmlAssets.writeSharedAssets(baseFolder);
+		} catch (IOException e) {
+			addError("Unable to write shared assets to " + baseFolder + ", embedding them in log file instead", e);
+			return null;
 		}
-		
-		return null;
-	}
-	
-	private int getColumnCount() {
-		return pattern.length() - pattern.replace("%", "").length();
+
+		return path;
 	}
 
 	public static String readFile(String filename) {
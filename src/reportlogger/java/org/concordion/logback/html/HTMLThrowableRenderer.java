@@ -16,6 +16,9 @@ import static ch.qos.logback.core.CoreConstants.LINE_SEPARATOR;
  * as published by the Free Software Foundation.
  */
 
+import java.util.HashMap;
+import java.util.Map;
+
 import ch.qos.logback.classic.spi.ILoggingEvent;
 import ch.qos.logback.classic.spi.IThrowableProxy;
 import ch.qos.logback.classic.spi.StackTraceElementProxy;
@@ -23,11 +26,24 @@ import ch.qos.logback.core.CoreConstants;
 import ch.qos.logback.core.helpers.Transform;
 import ch.qos.logback.core.html.IThrowableRenderer;
 
+/**
+ * Renders the stack trace of an event, each distinct stack is only written once per log file.
+ * 
+ * <p>
+ * Not thread safe: the renderer remembers the stacks it has written and is told the entry number before each call, so
+ * calls must be serialised. {@link HTMLFileAppender} encodes events under its lock to ensure this.
+ * </p>
+ */
 public class HTMLThrowableRenderer implements IThrowableRenderer<ILoggingEvent> {
 
     static final String TRACE_PREFIX = "<br />&nbsp;&nbsp;&nbsp;&nbsp;";
 	private int columnCount = 6;
 	private int exceptionCount = 0;
+	private long entryNumber = 0;
+	private boolean lazy = false;
+	private PackagePrefixTrie foldedPackages = null;
+	// Stacks already written to the current log file, keyed by fingerprint
+	private final Map<Long, RenderedStack> renderedStacks = new HashMap<Long, RenderedStack>();
 
     public void render(StringBuilder sbuf, ILoggingEvent event) {
 		IThrowableProxy tp = event.getThrowableProxy();
@@ -37,14 +53,76 @@ public class HTMLThrowableRenderer implements IThrowableRenderer<ILoggingEvent>
 		sbuf.append(LINE_SEPARATOR);
 		sbuf.append("<td class=\"indent\"></td><td colspan=\"").append(columnCount).append("\" class=\"output exceptionMessage\">");
 
-        while (tp != null) {
-			exceptionCount++;
-            render(sbuf, tp);
-            tp = tp.getCause();
-        }
+		Long fingerprint = fingerprint(tp);
+		RenderedStack rendered = renderedStacks.get(fingerprint);
+
+		if (rendered != null) {
+			renderRepeat(sbuf, tp, rendered);
+		} else {
+			renderedStacks.put(fingerprint, new RenderedStack(entryNumber));
+
+			while (tp != null) {
+				exceptionCount++;
+				render(sbuf, tp);
+				tp = tp.getCause();
+			}
+		}
+
         sbuf.append("</td></tr>");
     }
 
+	/**
+	 * Messages often differ between repeats of the same failure so are still shown, only the stack is replaced by a
+	 * reference to the entry that it was first written for.
+	 */
+	private void renderRepeat(StringBuilder sbuf, IThrowableProxy tp, RenderedStack rendered) {
+		rendered.count++;
+
+		while (tp != null) {
+			sbuf.append("<div>").append(CoreConstants.LINE_SEPARATOR);
+			printFirstLine(sbuf, tp);
+			sbuf.append("</div>").append(CoreConstants.LINE_SEPARATOR);
+			tp = tp.getCause();
+		}
+
+		// The count is how many times the stack has been seen so far, later repeats are not known yet
+		sbuf.append("<div class=\"stackTraceRepeat\">Same stack as #").append(rendered.entryNumber)
+				.append(" (occurrence ").append(rendered.count).append(")</div>").append(CoreConstants.LINE_SEPARATOR);
+	}
+
+	/**
+	 * Identifies a stack by the class and frames of each throwable in the cause chain, ignoring the messages.
+	 * 
+	 * @param tp Throwable to fingerprint
+	 * @return The fingerprint
+	 */
+	static long fingerprint(IThrowableProxy tp) {
+		// 64 bit FNV-1a, the stacks held for a log file are few enough that a collision is very unlikely
+		long hash = 0xcbf29ce484222325L;
+
+		while (tp != null) {
+			hash = mix(hash, tp.getClassName().hashCode());
+			hash = mix(hash, tp.getCommonFrames());
+
+			for (StackTraceElementProxy step : tp.getStackTraceElementProxyArray()) {
+				hash = mix(hash, step.getStackTraceElement().hashCode());
+			}
+
+			tp = tp.getCause();
+		}
+
+		return hash;
+	}
+
+	private static long mix(long hash, int value) {
+		for (int i = 0; i < 4; i++) {
+			hash ^= (value >>> (i * 8)) & 0xff;
+			hash *= 0x100000001b3L;
+		}
+
+		return hash;
+	}
+
     void render(StringBuilder sbuf, IThrowableProxy tp) {
     	
 		sbuf.append("<div>").append(CoreConstants.LINE_SEPARATOR);
@@ -60,14 +138,27 @@ public class HTMLThrowableRenderer implements IThrowableRenderer<ILoggingEvent>
         int commonFrames = tp.getCommonFrames();
         StackTraceElementProxy[] stepArray = tp.getStackTraceElementProxyArray();
 
-        for (int i = 0; i < stepArray.length - commonFrames; i++) {
-            StackTraceElementProxy step = stepArray[i];
-			// sbuf.append(TRACE_PREFIX);
-			sbuf.append("<div class=\"stackTraceEntry\">");
-            sbuf.append(Transform.escapeTags(step.toString()));
-			sbuf.append("</div>");
-            sbuf.append(CoreConstants.LINE_SEPARATOR);
-        }
+		if (lazy) {
+			renderLazyFrames(sbuf, stepArray, stepArray.length - commonFrames);
+		} else {
+			for (int i = 0; i < stepArray.length - commonFrames; i++) {
+				int folded = countFoldedFrames(stepArray, i, stepArray.length - commonFrames);
+
+				if (folded > 1) {
+					sbuf.append("<div class=\"stackTraceEntry foldedFrames\">... ").append(folded).append(" framework frames</div>");
+					sbuf.append(CoreConstants.LINE_SEPARATOR);
+					i += folded - 1;
+					continue;
+				}
+
+				StackTraceElementProxy step = stepArray[i];
+				// sbuf.append(TRACE_PREFIX);
+				sbuf.append("<div class=\"stackTraceEntry\">");
+				TransformText.escapeTags(step.toString(), sbuf);
+				sbuf.append("</div>");
+				sbuf.append(CoreConstants.LINE_SEPARATOR);
+			}
+		}
 
         if (commonFrames > 0) {
             sbuf.append(TRACE_PREFIX);
@@ -78,6 +169,47 @@ public class HTMLThrowableRenderer implements IThrowableRenderer<ILoggingEvent>
 
     }
 
+	/**
+	 * Writes the frames one per line into a script block that the browser does not parse, htmllog.js adds them to the
+	 * stack trace when it is first viewed.
+	 */
+	private void renderLazyFrames(StringBuilder sbuf, StackTraceElementProxy[] stepArray, int count) {
+		sbuf.append("<script id=\"stackTraceData").append(exceptionCount).append("\" type=\"text/plain\">").append(CoreConstants.LINE_SEPARATOR);
+
+		for (int i = 0; i < count; i++) {
+			int folded = countFoldedFrames(stepArray, i, count);
+
+			if (folded > 1) {
+				sbuf.append("... ").append(folded).append(" framework frames").append(CoreConstants.LINE_SEPARATOR);
+				i += folded - 1;
+				continue;
+			}
+
+			// The only text that can end the block early
+			sbuf.append(stepArray[i].toString().replace("</", "<\\/"));
+			sbuf.append(CoreConstants.LINE_SEPARATOR);
+		}
+
+		sbuf.append("</script>").append(CoreConstants.LINE_SEPARATOR);
+	}
+
+	/**
+	 * @return The number of consecutive frames from the start position that belong to folded packages
+	 */
+	private int countFoldedFrames(StackTraceElementProxy[] stepArray, int start, int end) {
+		if (foldedPackages == null || foldedPackages.isEmpty()) {
+			return 0;
+		}
+
+		int i = start;
+
+		while (i < end && foldedPackages.matches(stepArray[i].getStackTraceElement().getClassName())) {
+			i++;
+		}
+
+		return i - start;
+	}
+
     public void printFirstLine(StringBuilder sb, IThrowableProxy tp) {
         int commonFrames = tp.getCommonFrames();
         if (commonFrames > 0) {
@@ -92,4 +224,41 @@ public class HTMLThrowableRenderer implements IThrowableRenderer<ILoggingEvent>
 		this.columnCount  = columnCount;
 	}
 
+	/**
+	 * @param lazy Whether frames are only added to the page when the stack trace is viewed
+	 */
+	public void setLazy(boolean lazy) {
+		this.lazy = lazy;
+	}
+
+	/**
+	 * @param foldedPackages Packages whose consecutive frames are replaced by a count, may be null
+	 */
+	void setFoldedPackages(PackagePrefixTrie foldedPackages) {
+		this.foldedPackages = foldedPackages;
+	}
+
+	/**
+	 * @param entryNumber Number of the log entry that the next throwable belongs to
+	 */
+	public void setEntryNumber(long entryNumber) {
+		this.entryNumber = entryNumber;
+	}
+
+	/**
+	 * Forgets the stacks that have been written, called when a new log file is started.
+	 */
+	public void reset() {
+		renderedStacks.clear();
+	}
+
+	private static class RenderedStack {
+		private final long entryNumber;
+		private int count = 1;
+
+		RenderedStack(long entryNumber) {
+			this.entryNumber = entryNumber;
+		}
+	}
+
 }
@@ -0,0 +1,105 @@
+package org.concordion.logback.html;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.apache.commons.io.FileUtils;
+
+/**
+ * Provides the stylesheet and javascript resources used by the HTML log. Resources are only read from the
+ * classpath once, and when shared are only written to each output folder once.
+ */
+final class HtmlAssets {
+	static final String STYLESHEET = "htmllog.css";
+	static final String SCRIPT = "htmllog.js";
+
+	private static final ConcurrentMap<String, String> RESOURCES = new ConcurrentHashMap<String, String>();
+	private static final Set<String> SHARED_FOLDERS = Collections.synchronizedSet(new HashSet<String>());
+
+	private HtmlAssets() {
+	}
+
+	/**
+	 * @param filename Name of the resource
+	 * @return The content of the resource, including the style or script tags that wrap it
+	 */
+	static String getResource(String filename) {
+		String content = RESOURCES.get(filename);
+
+		if (content == null) {
+			content = HTMLLayout.readFile(filename);
+
+			if (content != null) {
+				RESOURCES.putIfAbsent(filename, content);
+			}
+		}
+
+		return content;
+	}
+
+	/**
+	 * Writes the stylesheet and javascript to the supplied folder, unless they have already been written there by this process.
+	 * 
+	 * @param folder Folder to write the files to
+	 * @throws IOException if unable to write the files
+	 */
+	static void writeSharedAssets(String folder) throws IOException {
+		if (SHARED_FOLDERS.contains(folder)) {
+			return;
+		}
+
+		synchronized (SHARED_FOLDERS) {
+			if (SHARED_FOLDERS.contains(folder)) {
+				return;
+			}
+
+			writeAsset(folder, STYLESHEET);
+			writeAsset(folder, SCRIPT);
+
+			SHARED_FOLDERS.add(folder);
+		}
+	}
+
+	/**
+	 * Works out the relative path from the folder holding a log file to the base folder.
+	 * 
+	 * @param baseFolder Root folder, ending with "/"
+	 * @param logPath Path of the log file (or the path the log file name starts with)
+	 * @return The relative path, or null if the log is not located under the base folder
+	 */
+	static String getRelativePathToBase(String baseFolder, String logPath) {
+		if (logPath == null || !logPath.replace('\\', '/').startsWith(baseFolder)) {
+			return null;
+		}
+
+		String relative = logPath.replace('\\', '/').substring(baseFolder.length());
+		StringBuilder path = new StringBuilder();
+
+		for (int i = 0; i < relative.length(); i++) {
+			if (relative.charAt(i) == '/') {
+				path.append("../");
+			}
+		}
+
+		return path.toString();
+	}
+
+	private static void writeAsset(String folder, String filename) throws IOException {
+		String content = getResource(filename);
+
+		if (content == null) {
+			throw new IOException("Unable to read resource " + filename);
+		}
+
+		// Strip the <style> or <script> tags used when the content is embedded in the log file
+		content = content.replaceFirst("^\\s*<(style|script)[^>]*>", "").replaceFirst("</(style|script)>\\s*$", "");
+
+		FileUtils.writeStringToFile(new File(folder, filename), content, StandardCharsets.UTF_8);
+	}
+}
@@ -0,0 +1,39 @@
+package org.concordion.logback.html;
+
+import org.concordion.slf4j.markers.HtmlMessageMarker;
+import org.concordion.slf4j.markers.MarkerSummary;
+
+import ch.qos.logback.classic.pattern.MessageConverter;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+
+/**
+ * Message converter for the HTML log, returns the HTML formatted version of the message if the event carries
+ * a {@link HtmlMessageMarker}, otherwise the plain formatted message.
+ *
+ * <p>
+ * The event itself is never modified so other appenders (console, text file, etc) logging the same event continue
+ * to see the plain message.
+ * </p>
+ */
+public class HtmlMessageConverter extends MessageConverter {
+
+	@Override
+	public String convert(ILoggingEvent event) {
+		return convert(event, MarkerSummary.of(event.getMarker()).getHtmlMessage());
+	}
+
+	/**
+	 * Converts the event using an already located marker.
+	 *
+	 * @param event Log event
+	 * @param marker HTML message marker attached to the event, or null if there isn't one
+	 * @return The message
+	 */
+	public String convert(ILoggingEvent event, HtmlMessageMarker marker) {
+		if (marker == null) {
+			return event.getFormattedMessage();
+		}
+
+		return marker.getFormattedMessage();
+	}
+}
@@ -0,0 +1,98 @@
+package org.concordion.logback.html;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Matches class names against a set of package prefixes, eg "org.junit" or "sun.reflect.*", in a single pass over the
+ * class name however many prefixes there are.
+ */
+final class PackagePrefixTrie {
+	private final Node root = new Node();
+	private boolean empty = true;
+
+	/**
+	 * @param prefixes Comma separated list of package or class name prefixes, a trailing ".*" is optional
+	 * @return A trie holding the prefixes
+	 */
+	static PackagePrefixTrie compile(String prefixes) {
+		PackagePrefixTrie trie = new PackagePrefixTrie();
+
+		if (prefixes == null) {
+			return trie;
+		}
+
+		for (String prefix : prefixes.split(",")) {
+			trie.add(prefix);
+		}
+
+		return trie;
+	}
+
+	void add(String prefix) {
+		String value = prefix.trim();
+
+		if (value.endsWith("*")) {
+			value = value.substring(0, value.length() - 1);
+		}
+
+		if (value.endsWith(".")) {
+			value = value.substring(0, value.length() - 1);
+		}
+
+		if (value.isEmpty()) {
+			return;
+		}
+
+		Node node = root;
+
+		for (int i = 0; i < value.length(); i++) {
+			Character ch = value.charAt(i);
+			Node child = node.children.get(ch);
+
+			if (child == null) {
+				child = new Node();
+				node.children.put(ch, child);
+			}
+
+			node = child;
+		}
+
+		node.terminal = true;
+		empty = false;
+	}
+
+	boolean isEmpty() {
+		return empty;
+	}
+
+	/**
+	 * @param className Fully qualified class name
+	 * @return True if the class is in, or is, one of the prefixes
+	 */
+	boolean matches(String className) {
+		Node node = root;
+
+		for (int i = 0; i < className.length(); i++) {
+			char ch = className.charAt(i);
+
+			// Prefixes only match whole package or class names, so "org.junit" does not match "org.junitx"
+			if (node.terminal && (ch == '.' || ch == '$')) {
+				return true;
+			}
+
+			node = node.children.get(ch);
+
+			if (node == null) {
+				return false;
+			}
+		}
+
+		return node.terminal;
+	}
+
+	private static class Node {
+		private final Map<Character, Node> children = new HashMap<Character, Node>();
+		private boolean terminal = false;
+	}
+}
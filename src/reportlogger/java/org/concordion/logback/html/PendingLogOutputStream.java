@@ -0,0 +1,117 @@
+package org.concordion.logback.html;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.output.DeferredFileOutputStream;
+
+/**
+ * Holds everything written to a log until it is known whether the log is wanted. Content is kept in memory until it
+ * exceeds the threshold and is then moved to a temporary file.
+ * 
+ * <p>
+ * Once committed, the held content is copied to the log file and all further writes go straight to the log file. If the
+ * stream is closed without being committed the content is thrown away and the log file is never created.
+ * </p>
+ */
+class PendingLogOutputStream extends OutputStream {
+	private final File logFile;
+	private final boolean append;
+	private DeferredFileOutputStream pending;
+	private OutputStream target = null;
+
+	/**
+	 * @param logFile File to write to if committed
+	 * @param append If true the content will be appended to the file when committed
+	 * @param threshold Number of bytes to hold in memory before moving to a temporary file
+	 */
+	PendingLogOutputStream(File logFile, boolean append, int threshold) {
+		this.logFile = logFile;
+		this.append = append;
+		this.pending = new DeferredFileOutputStream(threshold, "log", ".tmp", null);
+	}
+
+	boolean isCommitted() {
+		return target != null;
+	}
+
+	/**
+	 * Writes the held content to the log file and switches to writing directly to the log file.
+	 * 
+	 * @throws IOException If unable to write the log file
+	 */
+	void commit() throws IOException {
+		if (target != null) {
+			return;
+		}
+
+		File parent = logFile.getAbsoluteFile().getParentFile();
+		if (parent != null && !parent.exists() && !parent.mkdirs()) {
+			throw new IOException("Unable to create folder " + parent);
+		}
+
+		OutputStream out = new FileOutputStream(logFile, append);
+
+		try {
+			pending.close();
+			pending.writeTo(out);
+		} catch (IOException e) {
+			out.close();
+			throw e;
+		} finally {
+			release();
+		}
+
+		target = out;
+	}
+
+	@Override
+	public void write(int b) throws IOException {
+		if (target != null) {
+			target.write(b);
+		} else {
+			pending.write(b);
+		}
+	}
+
+	@Override
+	public void write(byte[] b, int off, int len) throws IOException {
+		if (target != null) {
+			target.write(b, off, len);
+		} else {
+			pending.write(b, off, len);
+		}
+	}
+
+	@Override
+	public void flush() throws IOException {
+		// Nothing to gain by flushing the pending content, it is only read once committed
+		if (target != null) {
+			target.flush();
+		}
+	}
+
+	@Override
+	public void close() throws IOException {
+		if (target != null) {
+			target.close();
+		} else {
+			release();
+		}
+	}
+
+	private void release() {
+		try {
+			pending.close();
+		} catch (IOException e) {
+			// Content is being discarded
+		}
+
+		if (!pending.isInMemory()) {
+			FileUtils.deleteQuietly(pending.getFile());
+		}
+	}
+}
@@ -6,6 +6,10 @@ package org.concordion.logback.html;
  * @author Andrew Sumner
  */
 public class TransformText {
+	private static final String TAB = "&nbsp;&nbsp;&nbsp;&nbsp;";
+	private static final String NEW_LINE = "<br />";
+	private static final char REPLACEMENT_CHARACTER = '\uFFFD';
+
 	/**
 	 * This method takes a String which may contain special characters (ie, \t, \r, \n)
 	 * and replaces these with the appropriate html tags
@@ -18,8 +22,10 @@ public class TransformText {
 		if (input == null || input.length() == 0) {
 			return input;
 		}
-		StringBuffer buf = new StringBuffer(input);
-		return escapeText(buf);
+
+		StringBuilder buf = new StringBuilder(input.length() + 16);
+		escape(input, buf, false, true);
+		return buf.toString();
 	}
 
 	/**
@@ -30,19 +36,95 @@ public class TransformText {
 	 * @return The converted value
 	 */
 	public static String escapeText(final StringBuffer buf) {
-		for (int i = 0; i < buf.length(); i++) {
-			char ch = buf.charAt(i);
+		String result = escapeText(buf.toString());
+
+		buf.setLength(0);
+		buf.append(result);
+
+		return result;
+	}
+
+	/**
+	 * Escapes characters that have a special meaning in HTML and appends the result to the supplied buffer, equivalent to
+	 * {@link ch.qos.logback.core.helpers.Transform#escapeTags(String)}.
+	 * 
+	 * @param input The text to be converted, a null value is appended as "null"
+	 * @param buf Buffer to append the converted value to
+	 */
+	public static void escapeTags(final CharSequence input, final StringBuilder buf) {
+		escape(input, buf, true, false);
+	}
+
+	/**
+	 * Escapes characters that have a special meaning in HTML and converts tabs and new lines into their HTML equivalent in a
+	 * single pass, appending the result to the supplied buffer.  Produces the same output as
+	 * <code>escapeText(Transform.escapeTags(input))</code> without the intermediate copies.
+	 * 
+	 * @param input The text to be converted, a null value is appended as "null"
+	 * @param buf Buffer to append the converted value to
+	 */
+	public static void escapeHtml(final CharSequence input, final StringBuilder buf) {
+		escape(input, buf, true, true);
+	}
+
+	private static void escape(final CharSequence input, final StringBuilder buf, boolean tags, boolean text) {
+		if (input == null) {
+			buf.append((String) null);
+			return;
+		}
+
+		int length = input.length();
+		int start = 0;
+
+		for (int i = 0; i < length; i++) {
+			char ch = input.charAt(i);
+
+			// Fast path: most characters need no escaping and are copied as part of a run
+			if (ch > '>') {
+				continue;
+			}
+
+			String replacement = null;
+
 			switch (ch) {
 			case '\t':
-				buf.replace(i, i + 1, "&nbsp;&nbsp;&nbsp;&nbsp;");
+				replacement = text ? TAB : null;
 				break;
 			case '\n':
-				buf.replace(i, i + 1, "<br />");
+				replacement = text ? NEW_LINE : null;
+				break;
+			case '\r':
+				break;
+			case '&':
+				replacement = tags ? "&amp;" : null;
+				break;
+			case '<':
+				replacement = tags ? "&lt;" : null;
+				break;
+			case '>':
+				replacement = tags ? "&gt;" : null;
+				break;
+			case '"':
+				replacement = tags ? "&quot;" : null;
+				break;
+			case '\'':
+				replacement = tags ? "&#39;" : null;
+				break;
+			default:
+				if (tags && ch < ' ') {
+					// These characters are not allowed, replace them with "Object Replacement Character"
+					buf.append(input, start, i).append(REPLACEMENT_CHARACTER);
+					start = i + 1;
+				}
 				break;
 			}
+
+			if (replacement != null) {
+				buf.append(input, start, i).append(replacement);
+				start = i + 1;
+			}
 		}
 
-		return buf.toString();
+		buf.append(input, start, length);
 	}
-
 }
@@ -0,0 +1,17 @@
+package org.concordion.slf4j;
+
+/**
+ * Base class for logging adaptors, provides default implementations of methods that have been added since
+ * {@link ILoggingAdaptor} was first published so that existing adaptors do not have to implement them.
+ */
+public abstract class BaseLoggingAdaptor implements ILoggingAdaptor
+{
+	/**
+	 * Let the logging framework know the outcome of the current test, called before {@link #stopLogFile()}. Does nothing
+	 * by default.
+	 * 
+	 * @param failed Whether the test failed
+	 */
+	public void testCompleted(boolean failed) {
+	}
+}
@@ -52,9 +52,9 @@ public interface ILoggingAdaptor
 	public boolean logFileExists();
 	
 	/**
-     * Return the file for the currently active log.
+     * Return the file for the currently active log, the file may not have been written yet.
      * 
-     * @return the log file, if one exists otherwise a new file object with exists set to false.
+     * @return the log file, or a file with an empty path if there is no active log.
      */
 	public File getLogFile();
 }
\ No newline at end of file
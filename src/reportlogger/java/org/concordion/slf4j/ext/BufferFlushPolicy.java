@@ -0,0 +1,15 @@
+package org.concordion.slf4j.ext;
+
+/**
+ * Determines when a buffered log entry is written to the log if it has not been written explicitly.
+ */
+public enum BufferFlushPolicy {
+	/** Written when the next log entry is started using the ReportLogger (the default) */
+	NEXT_ENTRY,
+
+	/** Written when the next step is logged using the ReportLogger */
+	STEP,
+
+	/** Written when the current example (or specification) completes */
+	EXAMPLE_END;
+}
@@ -1,9 +1,14 @@
 package org.concordion.slf4j.ext;
 
 import java.io.ByteArrayInputStream;
+import java.io.File;
 import java.io.InputStream;
+import java.nio.file.Path;
 import java.util.Iterator;
+import java.util.concurrent.Callable;
 
+import org.concordion.ext.AttachmentStreamer;
+import org.concordion.ext.AttachmentWriter;
 import org.concordion.ext.ScreenshotTaker;
 import org.concordion.slf4j.ILoggingAdaptor;
 import org.concordion.slf4j.markers.AttachmentMarker;
@@ -15,26 +20,52 @@ import org.concordion.slf4j.markers.ReportLoggerMarkers;
 import org.concordion.slf4j.markers.ScreenshotMarker;
 import org.slf4j.Logger;
 import org.slf4j.Marker;
-import org.slf4j.MarkerFactory;
+import org.slf4j.helpers.ConcordionMarker;
 import org.slf4j.helpers.MessageFormatter;
 import org.slf4j.spi.LocationAwareLogger;
 
 public class FluentLogger {
+	/**
+	 * Returned in place of a logger when the requested level is disabled so that building the log entry costs nothing:
+	 * no markers are created, no data is formatted and no screenshots are taken. Every method returns before touching
+	 * any state so a single instance is shared by all loggers and threads.
+	 */
+	static final FluentLogger DISABLED = new FluentLogger();
+
 	private static ThreadLocal<ILoggingAdaptor> loggingAdaptors = new ThreadLocal<ILoggingAdaptor>();
 	private static ThreadLocal<ScreenshotTaker> screenshotTakers = new ThreadLocal<ScreenshotTaker>();
 
+	/**
+	 * Path of the current log file, or null if data is being logged outside of a test. Only asked for when data is large
+	 * enough to be written to a file alongside the log, which happens as the entry is written.
+	 */
+	private static final Callable<String> LOG_FILE_PATH = new Callable<String>() {
+		@Override
+		public String call() {
+			ILoggingAdaptor adaptor = getLoggingAdaptor();
+
+			if (adaptor == null || adaptor.getLogFile() == null) {
+				return null;
+			}
+
+			return adaptor.getLogFile().getPath();
+		}
+	};
+
 	private final Logger logger;
 	// Is instance of location aware logger
 	private final boolean instanceofLAL;
 	// The fully qualified class name of the logger instance
 	private final String reportLoggerFQCN;
+	private final boolean enabled;
 
 	private boolean buffered;
 	private int bufferedLevel;
+	private int level = -1;
 	private Throwable bufferedThrowable = null;
 	
 	private String overrideFQCN = null;
-	private Marker marker = null;
+	private ConcordionMarker marker = null;
 	private String format = null;
 	private Object[] arguments = null;
 
@@ -75,9 +106,34 @@ public class FluentLogger {
 		this.logger = logger;
 		this.instanceofLAL = instanceofLAL;
 		this.buffered = buffered;
+		this.enabled = true;
+	}
+
+	private FluentLogger() {
+		this.reportLoggerFQCN = FluentLogger.class.getName();
+		this.logger = null;
+		this.instanceofLAL = false;
+		this.enabled = false;
+	}
+
+	/**
+	 * Creates a logger bound to a level that can be written using {@link #log()}.
+	 * 
+	 * @param logger Underlying logger
+	 * @param instanceofLAL True if the logger is a location aware logger
+	 * @param level One of the {@link LocationAwareLogger} level constants
+	 */
+	FluentLogger(Logger logger, boolean instanceofLAL, int level) {
+		this(logger, instanceofLAL, false);
+
+		this.level = level;
 	}
 	
 	public FluentLogger htmlMessage(String format, Object... arguments) {
+		if (!enabled) {
+			return this;
+		}
+
 		addMarker(new HtmlMessageMarker(format, arguments));
 
 		if (this.format == null && this.arguments == null) {
@@ -100,31 +156,104 @@ public class FluentLogger {
 		return this;
 	}
 
+	/**
+	 * Adds an HTML message that is only produced if the entry is written. Appenders other than the HTML log 
+	 * will see the message with the HTML tags removed.
+	 * 
+	 * @param messageSource Produces the HTML message
+	 * @return A self reference
+	 */
+	public FluentLogger htmlMessage(Callable<String> messageSource) {
+		if (!enabled) {
+			return this;
+		}
+
+		HtmlMessageMarker htmlMessage = new HtmlMessageMarker(messageSource);
+
+		addMarker(htmlMessage);
+
+		if (this.format == null && this.arguments == null) {
+			// Plain text version is only produced if an appender formats the message
+			this.format = "{}";
+			this.arguments = new Object[] { new PlainTextMessage(htmlMessage) };
+		}
+
+		return this;
+	}
+
 	public FluentLogger message(String format, Object... arguments) {
+		if (!enabled) {
+			return this;
+		}
+
 		this.format = format;
 		this.arguments = arguments;
 		return this;
 	}
 
 	public FluentLogger data(String format, Object... arguments) {
+		if (!enabled) {
+			return this;
+		}
+
 		String formattedMessage = MessageFormatter.arrayFormat(format, arguments).getMessage();
 		
-		addMarker(new DataMarker(formattedMessage));
+		addMarker(new DataMarker(formattedMessage).withLogFile(LOG_FILE_PATH));
+		
+		return this;
+	}
+
+	/**
+	 * Adds data that is only produced if the entry is written by an appender that displays data, such as the HTML log.
+	 * 
+	 * @param dataSource Produces the data
+	 * @return A self reference
+	 */
+	public FluentLogger data(Callable<String> dataSource) {
+		if (!enabled) {
+			return this;
+		}
+
+		addMarker(new DataMarker(dataSource).withLogFile(LOG_FILE_PATH));
 		
 		return this;
 	}
 
 	public FluentLogger html(String html) {
+		if (!enabled) {
+			return this;
+		}
+
 		addMarker(new HtmlMarker(html));
 		
 		return this;
 	}
 
+	/**
+	 * Adds HTML that is only produced if the entry is written by an appender that displays data, such as the HTML log.
+	 * 
+	 * @param htmlSource Produces the HTML
+	 * @return A self reference
+	 */
+	public FluentLogger html(Callable<String> htmlSource) {
+		if (!enabled) {
+			return this;
+		}
+
+		addMarker(new HtmlMarker(htmlSource));
+		
+		return this;
+	}
+
 	public FluentLogger screenshot() {
 		return screenshot(getScreenshotTaker());
 	}
 	
 	public FluentLogger screenshot(ScreenshotTaker screenshotTaker) {
+		if (!enabled) {
+			return this;
+		}
+
 		// TODO Don't like having to get logging adaptor - screenshots (and potentially data files)
 		// are the only thing that need access to the adaptor.
 		
@@ -166,10 +295,18 @@ public class FluentLogger {
 //	}
 
 	public FluentLogger attachment(String input, String filename, MediaType mediaType) {
+		if (!enabled) {
+			return this;
+		}
+
 		return attachment(new ByteArrayInputStream(input.getBytes()), filename, mediaType.toString());
 	}
 
 	public FluentLogger attachment(String input, String filename, String mediaType) {
+		if (!enabled) {
+			return this;
+		}
+
 		return attachment(new ByteArrayInputStream(input.getBytes()), filename, mediaType);
 	}
 
@@ -178,32 +315,154 @@ public class FluentLogger {
 	}
 	
 	public FluentLogger attachment(InputStream inputStream, String filename, String mediaType) {
+		if (!enabled) {
+			return this;
+		}
+
 		addMarker(new AttachmentMarker(getLoggingAdaptor().getLogFile().getPath(), inputStream, filename, mediaType.toString()));
 
 		return this;
 	}
 
+	/**
+	 * Attaches an existing file. The file is copied without being read into memory so is suitable for large files, only
+	 * the start of a text file is included in the log.
+	 * 
+	 * @param file File to attach
+	 * @param mediaType Media type of the file
+	 * @return A self reference
+	 */
+	public FluentLogger attachment(Path file, MediaType mediaType) {
+		return attachment(file.toFile(), mediaType.toString());
+	}
+
+	public FluentLogger attachment(Path file, String mediaType) {
+		return attachment(file.toFile(), mediaType);
+	}
+
+	public FluentLogger attachment(File file, MediaType mediaType) {
+		return attachment(file, mediaType.toString());
+	}
+
+	public FluentLogger attachment(File file, String mediaType) {
+		if (!enabled) {
+			return this;
+		}
+
+		addMarker(new AttachmentMarker(getLoggingAdaptor().getLogFile().getPath(), file, file.getName(), mediaType));
+
+		return this;
+	}
+
+	/**
+	 * Adds an attachment whose content is only produced if the entry is written.
+	 * 
+	 * @param contentSource Produces the content of the attachment
+	 * @param filename Name of the attachment
+	 * @param mediaType Media type of the attachment
+	 * @return A self reference
+	 */
+	public FluentLogger attachment(Callable<String> contentSource, String filename, MediaType mediaType) {
+		return attachment(contentSource, filename, mediaType.toString());
+	}
+
+	public FluentLogger attachment(Callable<String> contentSource, String filename, String mediaType) {
+		if (!enabled) {
+			return this;
+		}
+
+		addMarker(new AttachmentMarker(getLoggingAdaptor().getLogFile().getPath(), contentSource, filename, mediaType));
+
+		return this;
+	}
+
+	/**
+	 * Adds an attachment whose content is streamed straight to the attachment file if the entry is written, so that
+	 * large attachments are never held in memory.
+	 * 
+	 * @param filename Name of the attachment
+	 * @param mediaType Media type of the attachment
+	 * @param streamer Writes the content of the attachment
+	 * @return A self reference
+	 */
+	public FluentLogger streamAttachment(String filename, MediaType mediaType, AttachmentStreamer streamer) {
+		return streamAttachment(filename, mediaType.toString(), streamer);
+	}
+
+	public FluentLogger streamAttachment(String filename, String mediaType, AttachmentStreamer streamer) {
+		if (!enabled) {
+			return this;
+		}
+
+		addMarker(new AttachmentMarker(getLoggingAdaptor().getLogFile().getPath(), filename, mediaType, streamer));
+
+		return this;
+	}
+
+	/**
+	 * Adds a text attachment whose content is written straight to the attachment file, encoded as UTF-8, if the entry is
+	 * written, so that large attachments are never held in memory.
+	 * 
+	 * @param filename Name of the attachment
+	 * @param mediaType Media type of the attachment
+	 * @param writer Writes the content of the attachment
+	 * @return A self reference
+	 */
+	public FluentLogger writeAttachment(String filename, MediaType mediaType, AttachmentWriter writer) {
+		return writeAttachment(filename, mediaType.toString(), writer);
+	}
+
+	public FluentLogger writeAttachment(String filename, String mediaType, AttachmentWriter writer) {
+		if (!enabled) {
+			return this;
+		}
+
+		addMarker(new AttachmentMarker(getLoggingAdaptor().getLogFile().getPath(), filename, mediaType, writer));
+
+		return this;
+	}
+
 	public FluentLogger marker(Marker marker) {
+		if (!enabled) {
+			return this;
+		}
+
 		addMarker(marker);
 		return this;
 	}
 
 	public FluentLogger locationAwareParent(String currentClass) {
+		if (!enabled) {
+			return this;
+		}
+
 		overrideFQCN = currentClass;
 		return this;
 	}
 
 	public FluentLogger locationAwareParent(Object currentClass) {
+		if (!enabled) {
+			return this;
+		}
+
 		overrideFQCN = currentClass.getClass().getName();
 		return this;
 	}
 
 	public FluentLogger locationAwareParent(Class<?> currentClass) {
+		if (!enabled) {
+			return this;
+		}
+
 		overrideFQCN = currentClass.getName();
 		return this;
 	}
 	
 	public void trace() {
+		if (!enabled) {
+			return;
+		}
+
 		if (buffered) {
 			bufferedLevel = LocationAwareLogger.TRACE_INT;
 			return;
@@ -225,6 +484,10 @@ public class FluentLogger {
 	}
 
 	public void debug() {
+		if (!enabled) {
+			return;
+		}
+
 		if (buffered) {
 			bufferedLevel = LocationAwareLogger.DEBUG_INT;
 			return;
@@ -246,6 +509,10 @@ public class FluentLogger {
 	}
 
 	public void info() {
+		if (!enabled) {
+			return;
+		}
+
 		if (buffered) {
 			bufferedLevel = LocationAwareLogger.INFO_INT;
 			return;
@@ -267,6 +534,10 @@ public class FluentLogger {
 	}
 
 	public void warn() {
+		if (!enabled) {
+			return;
+		}
+
 		if (buffered) {
 			bufferedLevel = LocationAwareLogger.WARN_INT;
 			return;
@@ -292,6 +563,10 @@ public class FluentLogger {
 	}
 
 	public void error(Throwable t) {
+		if (!enabled) {
+			return;
+		}
+
 		if (buffered) {
 			bufferedLevel = LocationAwareLogger.ERROR_INT;
 			bufferedThrowable = t;
@@ -313,6 +588,38 @@ public class FluentLogger {
 		reset();
 	}
 
+	/**
+	 * Writes the entry at the level chosen when the logger was created, eg by {@link ReportLogger#atDebug()}.
+	 */
+	public void log() {
+		if (!enabled) {
+			return;
+		}
+
+		if (level < 0) {
+			throw new IllegalStateException("No level has been set for this log entry, use trace(), debug(), info(), warn() or error() instead");
+		}
+
+		log(level, null);
+	}
+
+	/**
+	 * Writes the entry at the level chosen when the logger was created, eg by {@link ReportLogger#atError()}.
+	 * 
+	 * @param t Exception to log
+	 */
+	public void log(Throwable t) {
+		if (!enabled) {
+			return;
+		}
+
+		if (level < 0) {
+			throw new IllegalStateException("No level has been set for this log entry, use trace(), debug(), info(), warn() or error() instead");
+		}
+
+		log(level, t);
+	}
+
 	void writeBufferedEntry() {
 		if (!buffered) {
 			return;
@@ -320,7 +627,11 @@ public class FluentLogger {
 		
 		buffered = false;
 		
-		switch (bufferedLevel) {
+		log(bufferedLevel, bufferedThrowable);
+	}
+
+	private void log(int level, Throwable t) {
+		switch (level) {
 		case LocationAwareLogger.TRACE_INT:
 			trace();
 			break;
@@ -338,43 +649,23 @@ public class FluentLogger {
 			break;
 			
 		case LocationAwareLogger.ERROR_INT:
-			error(bufferedThrowable);
+			error(t);
 			break;
 			
 		default:
-			throw new RuntimeException("Invalid buffer level");
+			throw new RuntimeException("Invalid log level");
 		}
 	}
 	
-	private int getMarkerChildCount(Marker reference) {
-		int count = 0;
-	
-		if (marker == null) {
-			return 0;
-		}
-	
-		Iterator<Marker> references = reference.iterator();
-		while (references.hasNext()) {
-			count ++;
-			references.next();
-		}
-		
-		return count;
-	}
-	
 	private void addMarker(Marker reference) {
 		if (marker == null) {
 			// Start with a detached marker so that any bound markers that are added are not accidentally reused in
 			// subsequent logging statements
-			marker = MarkerFactory.getDetachedMarker("FLUENT_LOGGER");
+			marker = new ConcordionMarker("FLUENT_LOGGER");
 		}
 
-		int count = getMarkerChildCount(marker);
-		
-		marker.add(reference);
-		
-		if (count == getMarkerChildCount(marker)) {
-			throw new RuntimeException("Marker " + marker.getName() + " has already been added to this logging entry, duplicates markers are not allowed");
+		if (!marker.addReference(reference)) {
+			throw new RuntimeException("Marker " + reference.getName() + " has already been added to this logging entry, duplicates markers are not allowed");
 		}
 	}
 	
@@ -401,8 +692,9 @@ public class FluentLogger {
 			((BaseDataMarker<?>) reference).prepareData();
 		}
 
-		// TODO This takes screenshots and writes data to files, this probably should be done in HTMLLayout
-		// so the effort is not wasted if it's not going to be used.
+		// Screenshots are taken and data written to files here rather than in an appender as the page may have moved on
+		// by the time the event is rendered. This is only reached once the level is known to be enabled, no check is made
+		// that an appender or listener will actually use the result.
 		Iterator<Marker> references = reference.iterator();
 		while (references.hasNext()) {
 			prepareData(references.next());
@@ -419,4 +711,20 @@ public class FluentLogger {
 		this.format = null;
 		this.arguments = null;
 	}
+
+	/**
+	 * Argument that converts a lazily supplied HTML message to plain text when the log entry is formatted.
+	 */
+	private static class PlainTextMessage {
+		private final HtmlMessageMarker htmlMessage;
+
+		PlainTextMessage(HtmlMessageMarker htmlMessage) {
+			this.htmlMessage = htmlMessage;
+		}
+
+		@Override
+		public String toString() {
+			return htmlMessage.getFormattedMessage().replaceAll("<.*?>", "").replaceAll("&#.*?;", "");
+		}
+	}
 }
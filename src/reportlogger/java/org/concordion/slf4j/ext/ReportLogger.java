@@ -24,9 +24,14 @@
  */
 package org.concordion.slf4j.ext;
 
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
 import org.concordion.slf4j.markers.ReportLoggerMarkers;
 import org.slf4j.Logger;
 import org.slf4j.ext.LoggerWrapper;
+import org.slf4j.spi.LocationAwareLogger;
 
 /**
  * A utility that provides standard mechanisms for logging certain kinds of
@@ -35,7 +40,8 @@ import org.slf4j.ext.LoggerWrapper;
  * @author Andrew Sumner
  */
 public class ReportLogger extends LoggerWrapper {
-	private static FluentLogger bufferedLogger = null;
+	// Buffered entries are held per thread so that tests running in parallel cannot write or clear each others entries
+	private static final ThreadLocal<List<BufferedEntry>> bufferedEntries = new ThreadLocal<List<BufferedEntry>>();
 	
 	/**
 	 * Given an underlying logger, construct an XLogger
@@ -68,6 +74,8 @@ public class ReportLogger extends LoggerWrapper {
 	 *            a list of arguments
 	 */
 	public void step(String format, Object... arguments) {
+		writeBufferedMessages(BufferFlushPolicy.STEP);
+
 		logger.info(ReportLoggerMarkers.STEP_MARKER, format, arguments);
 	}
 
@@ -77,10 +85,75 @@ public class ReportLogger extends LoggerWrapper {
 	 * @return A FluentLogger
 	 */
 	public FluentLogger with() {
-		writeBufferedMessage();
+		writeBufferedMessages(BufferFlushPolicy.NEXT_ENTRY);
 		
 		return new FluentLogger(logger, instanceofLAL);
 	}
+
+	/**
+	 * Access custom reporting methods for an entry that will be logged at trace level using {@link FluentLogger#log()}.
+	 * 
+	 * <p>
+	 * If trace is not enabled for this logger a shared logger that ignores all calls is returned, so no markers, data or 
+	 * screenshots are created for an entry that would not be logged.
+	 * </p>
+	 * 
+	 * @return A FluentLogger
+	 */
+	public FluentLogger atTrace() {
+		return at(LocationAwareLogger.TRACE_INT, logger.isTraceEnabled());
+	}
+
+	/**
+	 * Access custom reporting methods for an entry that will be logged at debug level using {@link FluentLogger#log()}.
+	 * 
+	 * @return A FluentLogger, or a shared logger that ignores all calls if debug is not enabled 
+	 * @see #atTrace()
+	 */
+	public FluentLogger atDebug() {
+		return at(LocationAwareLogger.DEBUG_INT, logger.isDebugEnabled());
+	}
+
+	/**
+	 * Access custom reporting methods for an entry that will be logged at info level using {@link FluentLogger#log()}.
+	 * 
+	 * @return A FluentLogger, or a shared logger that ignores all calls if info is not enabled 
+	 * @see #atTrace()
+	 */
+	public FluentLogger atInfo() {
+		return at(LocationAwareLogger.INFO_INT, logger.isInfoEnabled());
+	}
+
+	/**
+	 * Access custom reporting methods for an entry that will be logged at warn level using {@link FluentLogger#log()}.
+	 * 
+	 * @return A FluentLogger, or a shared logger that ignores all calls if warn is not enabled 
+	 * @see #atTrace()
+	 */
+	public FluentLogger atWarn() {
+		return at(LocationAwareLogger.WARN_INT, logger.isWarnEnabled());
+	}
+
+	/**
+	 * Access custom reporting methods for an entry that will be logged at error level using {@link FluentLogger#log()} 
+	 * or {@link FluentLogger#log(Throwable)}.
+	 * 
+	 * @return A FluentLogger, or a shared logger that ignores all calls if error is not enabled 
+	 * @see #atTrace()
+	 */
+	public FluentLogger atError() {
+		return at(LocationAwareLogger.ERROR_INT, logger.isErrorEnabled());
+	}
+
+	private FluentLogger at(int level, boolean enabled) {
+		writeBufferedMessages(BufferFlushPolicy.NEXT_ENTRY);
+
+		if (!enabled) {
+			return FluentLogger.DISABLED;
+		}
+
+		return new FluentLogger(logger, instanceofLAL, level);
+	}
 	
 	/**
 	 * Buffer the desired log entry until you push it using {@link ReportLogger#writeBufferedMessage()}
@@ -93,9 +166,35 @@ public class ReportLogger extends LoggerWrapper {
 	 * @return A FluentLogger
 	 */
 	public FluentLogger withBuffered() {
-		writeBufferedMessage();
-		
-		bufferedLogger = new FluentLogger(logger, instanceofLAL, true);
+		return withBuffered(BufferFlushPolicy.NEXT_ENTRY);
+	}
+
+	/**
+	 * Buffer the desired log entry until you push it using {@link ReportLogger#writeBufferedMessage()}
+	 * or the flush policy forces it to be written.
+	 * 
+	 * <p>
+	 * Buffered entries belong to the current thread, any number of entries can be buffered at once and are written
+	 * in the order they were created.
+	 * </p>
+	 * 
+	 * @param policy When the entry should be written if it is not written explicitly
+	 * @return A FluentLogger
+	 */
+	public FluentLogger withBuffered(BufferFlushPolicy policy) {
+		writeBufferedMessages(BufferFlushPolicy.NEXT_ENTRY);
+
+		List<BufferedEntry> entries = bufferedEntries.get();
+
+		if (entries == null) {
+			entries = new ArrayList<BufferedEntry>(2);
+			bufferedEntries.set(entries);
+		}
+
+		FluentLogger bufferedLogger = new FluentLogger(logger, instanceofLAL, true);
+
+		entries.add(new BufferedEntry(bufferedLogger, policy));
+
 		return bufferedLogger;
 	}
 	
@@ -103,31 +202,75 @@ public class ReportLogger extends LoggerWrapper {
 	 * @return True if a buffered message is waiting to be written.
 	 */
 	public boolean hasBufferedMessage() {
-		return bufferedLogger != null;
+		List<BufferedEntry> entries = bufferedEntries.get();
+
+		return entries != null && !entries.isEmpty();
 	}
 	
 	/**
-	 * Write the buffered entry to the logs.
+	 * Write all the buffered entries to the logs.
 	 */
 	public void writeBufferedMessage() {
-		if (hasBufferedMessage()) {
-			bufferedLogger.writeBufferedEntry();
-			bufferedLogger = null;
+		writeBufferedMessages(BufferFlushPolicy.EXAMPLE_END);
+	}
+
+	/**
+	 * Write the buffered entries whose flush policy is satisfied by the event, eg STEP will write entries
+	 * with a policy of NEXT_ENTRY or STEP.
+	 * 
+	 * @param event The event that has occurred 
+	 */
+	public void writeBufferedMessages(BufferFlushPolicy event) {
+		List<BufferedEntry> entries = bufferedEntries.get();
+
+		if (entries == null) {
+			return;
+		}
+
+		List<FluentLogger> toWrite = null;
+
+		for (Iterator<BufferedEntry> it = entries.iterator(); it.hasNext();) {
+			BufferedEntry entry = it.next();
+
+			if (entry.policy.compareTo(event) <= 0) {
+				if (toWrite == null) {
+					toWrite = new ArrayList<FluentLogger>(entries.size());
+				}
+
+				toWrite.add(entry.logger);
+				it.remove();
+			}
+		}
+
+		if (entries.isEmpty()) {
+			bufferedEntries.remove();
+		}
+
+		if (toWrite != null) {
+			for (FluentLogger bufferedLogger : toWrite) {
+				bufferedLogger.writeBufferedEntry();
+			}
 		}
 	}
 	
 	/**
-	 * Clear the buffered entry, it will not get written to the logs.
+	 * Clear the buffered entries, they will not get written to the logs.
 	 */
 	public void clearBufferedMessage() {
-		bufferedLogger = null;
+		bufferedEntries.remove();
 	}
 	
 	/**
-	 * @return The buffered log entry so it can be updated.
+	 * @return The most recently buffered log entry so it can be updated.
 	 */
 	public FluentLogger getBufferedMessage() {
-		return bufferedLogger;
+		List<BufferedEntry> entries = bufferedEntries.get();
+
+		if (entries == null || entries.isEmpty()) {
+			return null;
+		}
+
+		return entries.get(entries.size() - 1).logger;
 	}
 	
 	/**
@@ -141,4 +284,14 @@ public class ReportLogger extends LoggerWrapper {
 	public void tooltip(String format, Object... arguments) {
 		debug(ReportLoggerMarkers.TOOLTIP_MARKER, format, arguments);
 	}
+
+	private static class BufferedEntry {
+		private final FluentLogger logger;
+		private final BufferFlushPolicy policy;
+
+		BufferedEntry(FluentLogger logger, BufferFlushPolicy policy) {
+			this.logger = logger;
+			this.policy = policy;
+		}
+	}
 }
@@ -0,0 +1,49 @@
+package org.concordion.slf4j.markers;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Allocates the numbers used to name files attached to a log (eg screenshots and attachments).
+ * 
+ * <p>
+ * Numbers are allocated per log file rather than per thread, so that every thread writing to the same log, whether or not
+ * it has inherited the MDC of the test thread, gets a unique number. Numbering starts at 0 and restarts once the log file
+ * has been released.
+ * </p>
+ */
+public final class ArtifactAllocator {
+	private static final ConcurrentMap<String, AtomicInteger> COUNTERS = new ConcurrentHashMap<String, AtomicInteger>();
+
+	private ArtifactAllocator() {
+	}
+
+	/**
+	 * @param logFile Log file the artifact belongs to
+	 * @return The next unused number for the log file
+	 */
+	public static int next(String logFile) {
+		AtomicInteger counter = COUNTERS.get(logFile);
+
+		if (counter == null) {
+			AtomicInteger created = new AtomicInteger();
+
+			counter = COUNTERS.putIfAbsent(logFile, created);
+			if (counter == null) {
+				counter = created;
+			}
+		}
+
+		return counter.getAndIncrement();
+	}
+
+	/**
+	 * Forgets the numbers allocated to the log file, should be called once nothing else will be written to the log.
+	 * 
+	 * @param logFile Log file
+	 */
+	public static void release(String logFile) {
+		COUNTERS.remove(logFile);
+	}
+}
@@ -0,0 +1,213 @@
+package org.concordion.slf4j.markers;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.output.NullOutputStream;
+
+/**
+ * Stores files attached to log entries (eg screenshots) once per unique content rather than once per log entry.
+ * 
+ * <p>
+ * Disabled by default. When enabled, files are written to an "artifacts" folder under the root folder and named after the
+ * SHA-256 hash of their content, so identical screenshots or attachments logged by any test in the suite share a single
+ * file. The hash is calculated as the content is written to a temporary file, which is then renamed, or deleted if the
+ * content has already been stored.
+ * </p>
+ */
+public final class ArtifactStore {
+	static final String FOLDER = "artifacts";
+
+	private static final char[] HEX = "0123456789abcdef".toCharArray();
+	private static final Set<String> STORED = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+	private static volatile File folder = null;
+
+	private ArtifactStore() {
+	}
+
+	/**
+	 * @param root Folder to create the store in, usually the base output folder, or null to disable the store
+	 */
+	public static void setRoot(File root) {
+		folder = (root == null) ? null : new File(root, FOLDER);
+		STORED.clear();
+	}
+
+	public static boolean isEnabled() {
+		return folder != null;
+	}
+
+	/**
+	 * Starts writing a new artifact, the content is only added to the store once {@link Artifact#store(String)} is called.
+	 * 
+	 * @param extension File extension for the artifact, without the leading "."
+	 * @return The artifact to write the content to
+	 * @throws IOException If unable to create the temporary file
+	 */
+	public static Artifact create(String extension) throws IOException {
+		File target = folder;
+
+		if (target == null) {
+			throw new IllegalStateException("The artifact store is not enabled");
+		}
+
+		if (!target.exists() && !target.mkdirs() && !target.exists()) {
+			throw new IOException("Unable to create folder " + target);
+		}
+
+		return new Artifact(target, extension, File.createTempFile("artifact", ".tmp", target));
+	}
+
+	/**
+	 * Adds content that has already been captured in memory to the store, the file is written by the {@link ArtifactWriter}
+	 * so may be written on a background thread.
+	 * 
+	 * @param logFile Log file that will refer to the artifact
+	 * @param extension File extension for the artifact, without the leading "."
+	 * @param content Content of the artifact
+	 * @return Path to the artifact relative to the log file
+	 * @throws IOException If writing on the calling thread and unable to write the file
+	 */
+	public static String store(String logFile, String extension, ByteArrayOutputStream content) throws IOException {
+		File target = folder;
+
+		if (target == null) {
+			throw new IllegalStateException("The artifact store is not enabled");
+		}
+
+		MessageDigest digest = newDigest();
+		content.writeTo(new DigestOutputStream(NullOutputStream.NULL_OUTPUT_STREAM, digest));
+
+		File file = new File(target, toHex(digest.digest()) + getSuffix(extension));
+		final String name = file.getName();
+
+		if (STORED.add(name) && !file.exists()) {
+			if (!target.exists() && !target.mkdirs() && !target.exists()) {
+				STORED.remove(name);
+				throw new IOException("Unable to create folder " + target);
+			}
+
+			// The write may be on a background thread, if it fails the next artifact with this content must write it again
+			ArtifactWriter.write(logFile, file, content, new Runnable() {
+				@Override
+				public void run() {
+					STORED.remove(name);
+				}
+			});
+		}
+
+		return getRelativePath(logFile, file);
+	}
+
+	static String getRelativePath(String logFile, File artifact) {
+		File logFolder = new File(logFile).getAbsoluteFile().getParentFile();
+
+		return logFolder.toPath().relativize(artifact.getAbsoluteFile().toPath()).toString().replace('\\', '/');
+	}
+
+	private static MessageDigest newDigest() {
+		try {
+			return MessageDigest.getInstance("SHA-256");
+		} catch (NoSuchAlgorithmException e) {
+			// Every Java platform is required to support SHA-256
+			throw new IllegalStateException(e);
+		}
+	}
+
+	private static String getSuffix(String extension) {
+		return (extension == null || extension.isEmpty()) ? "" : "." + extension;
+	}
+
+	private static String toHex(byte[] bytes) {
+		char[] chars = new char[bytes.length * 2];
+
+		for (int i = 0; i < bytes.length; i++) {
+			chars[i * 2] = HEX[(bytes[i] >> 4) & 0xF];
+			chars[i * 2 + 1] = HEX[bytes[i] & 0xF];
+		}
+
+		return new String(chars);
+	}
+
+	/**
+	 * Content being written to the store.
+	 */
+	public static class Artifact {
+		private final File folder;
+		private final String extension;
+		private final File tempFile;
+		private final MessageDigest digest;
+		private final OutputStream outputStream;
+
+		private Artifact(File folder, String extension, File tempFile) throws IOException {
+			this.folder = folder;
+			this.extension = extension;
+			this.tempFile = tempFile;
+			this.digest = newDigest();
+			this.outputStream = new DigestOutputStream(new FileOutputStream(tempFile), digest);
+		}
+
+		/**
+		 * @return Stream to write the content to, hashing it as it is written
+		 */
+		public OutputStream getOutputStream() {
+			return outputStream;
+		}
+
+		/**
+		 * Closes the output stream and moves the content into the store, unless the content is already there.
+		 * 
+		 * @param logFile Log file that will refer to the artifact
+		 * @return Path to the artifact relative to the log file
+		 * @throws IOException If unable to move the file into the store
+		 */
+		public String store(String logFile) throws IOException {
+			File file;
+
+			try {
+				outputStream.close();
+
+				file = new File(folder, toHex(digest.digest()) + getSuffix(extension));
+
+				if (STORED.add(file.getName()) && !file.exists()) {
+					try {
+						// Another thread may be storing the same content, either copy is as good as the other
+						Files.move(tempFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+					} catch (IOException e) {
+						STORED.remove(file.getName());
+						throw e;
+					}
+				}
+			} finally {
+				FileUtils.deleteQuietly(tempFile);
+			}
+
+			return getRelativePath(logFile, file);
+		}
+
+		/**
+		 * Closes the output stream and throws away the content.
+		 */
+		public void discard() {
+			try {
+				outputStream.close();
+			} catch (IOException e) {
+				// Content is being thrown away
+			} finally {
+				FileUtils.deleteQuietly(tempFile);
+			}
+		}
+	}
+}
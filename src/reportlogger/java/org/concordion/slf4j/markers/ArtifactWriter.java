@@ -0,0 +1,226 @@
+package org.concordion.slf4j.markers;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Writes files attached to log entries (eg screenshots) on a small pool of background threads so that the test thread
+ * does not have to wait for the file to be written.
+ * 
+ * <p>
+ * Disabled by default, when disabled files are written on the calling thread as they always have been. File names are
+ * always allocated by the caller before the write is queued so the log entry can refer to the file straight away. Writes
+ * are tracked against the log file they belong to and {@link #flush(String)} waits for those writes to complete.
+ * </p>
+ * 
+ * <p>
+ * The queue is bounded, if it fills up the calling thread writes the file itself rather than using more memory.
+ * </p>
+ */
+public final class ArtifactWriter {
+	private static final Logger LOGGER = LoggerFactory.getLogger(ArtifactWriter.class);
+
+	static final int THREADS = 2;
+	private static final int QUEUE_SIZE = 32;
+
+	// Guarded by itself so that a write can't be added to a list that flush has already taken
+	private static final Map<String, List<Future<?>>> PENDING = new HashMap<String, List<Future<?>>>();
+	private static volatile boolean asynchronous = false;
+	private static ThreadPoolExecutor executor = null;
+
+	private ArtifactWriter() {
+	}
+
+	/**
+	 * @param value If true files will be written on a background thread
+	 */
+	public static void setAsynchronous(boolean value) {
+		asynchronous = value;
+	}
+
+	public static boolean isAsynchronous() {
+		return asynchronous;
+	}
+
+	/**
+	 * Writes the content to the file, on a background thread if asynchronous writes are enabled.
+	 * 
+	 * @param logFile Log file the content belongs to
+	 * @param target File to write to
+	 * @param content Content to write
+	 * @throws IOException If writing on the calling thread and unable to write the file
+	 */
+	public static void write(String logFile, File target, ByteArrayOutputStream content) throws IOException {
+		write(logFile, target, content, null);
+	}
+
+	/**
+	 * Writes the content to the file, on a background thread if asynchronous writes are enabled.
+	 * 
+	 * @param logFile Log file the content belongs to
+	 * @param target File to write to
+	 * @param content Content to write
+	 * @param onFailure Run if unable to write the file, on whichever thread wrote it, may be null
+	 * @throws IOException If writing on the calling thread and unable to write the file
+	 */
+	public static void write(String logFile, final File target, final ByteArrayOutputStream content, final Runnable onFailure) throws IOException {
+		if (!asynchronous) {
+			try {
+				writeFile(target, content);
+			} catch (IOException e) {
+				runQuietly(onFailure);
+				throw e;
+			}
+			return;
+		}
+
+		submit(logFile, new Runnable() {
+			@Override
+			public void run() {
+				try {
+					writeFile(target, content);
+				} catch (IOException e) {
+					LOGGER.error("Unable to write " + target, e);
+					runQuietly(onFailure);
+				}
+			}
+		});
+	}
+
+	/**
+	 * Runs a task that produces a file for the log (eg a thumbnail) on a background thread whether or not asynchronous
+	 * writes are enabled, {@link #flush(String)} will wait for the task to complete.
+	 * 
+	 * @param logFile Log file the task belongs to
+	 * @param task Task to run
+	 */
+	public static void submit(String logFile, Runnable task) {
+		Future<?> future = getExecutor().submit(task);
+
+		synchronized (PENDING) {
+			getPending(logFile).add(future);
+		}
+	}
+
+	/**
+	 * Waits for any outstanding writes for the log file to complete.
+	 * 
+	 * @param logFile Log file
+	 */
+	public static void flush(String logFile) {
+		List<Future<?>> pending;
+
+		synchronized (PENDING) {
+			pending = PENDING.remove(logFile);
+		}
+
+		if (pending == null) {
+			return;
+		}
+
+		boolean interrupted = false;
+
+		for (Future<?> future : pending) {
+			while (true) {
+				try {
+					future.get();
+					break;
+				} catch (InterruptedException e) {
+					interrupted = true;
+				} catch (ExecutionException e) {
+					LOGGER.error("Unable to write log attachment", e.getCause());
+					break;
+				}
+			}
+		}
+
+		if (interrupted) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	private static List<Future<?>> getPending(String logFile) {
+		List<Future<?>> pending = PENDING.get(logFile);
+
+		if (pending == null) {
+			pending = new ArrayList<Future<?>>();
+			PENDING.put(logFile, pending);
+		} else {
+			// Stop the queue growing for logs that are never flushed
+			for (Iterator<Future<?>> it = pending.iterator(); it.hasNext();) {
+				if (it.next().isDone()) {
+					it.remove();
+				}
+			}
+		}
+
+		return pending;
+	}
+
+	private static void runQuietly(Runnable task) {
+		if (task == null) {
+			return;
+		}
+
+		try {
+			task.run();
+		} catch (RuntimeException e) {
+			LOGGER.error("Unable to clean up after failed write", e);
+		}
+	}
+
+	private static synchronized ThreadPoolExecutor getExecutor() {
+		if (executor == null) {
+			executor = new ThreadPoolExecutor(THREADS, THREADS, 30, TimeUnit.SECONDS,
+					new ArrayBlockingQueue<Runnable>(QUEUE_SIZE),
+					new WriterThreadFactory(),
+					new ThreadPoolExecutor.CallerRunsPolicy());
+
+			executor.allowCoreThreadTimeOut(true);
+		}
+
+		return executor;
+	}
+
+	private static void writeFile(File target, ByteArrayOutputStream content) throws IOException {
+		OutputStream outputStream = null;
+
+		try {
+			outputStream = new FileOutputStream(target);
+			content.writeTo(outputStream);
+		} finally {
+			if (outputStream != null) {
+				outputStream.close();
+			}
+		}
+	}
+
+	private static class WriterThreadFactory implements ThreadFactory {
+		private final AtomicInteger count = new AtomicInteger(0);
+
+		@Override
+		public Thread newThread(Runnable runnable) {
+			Thread thread = new Thread(runnable, "log-artifact-writer-" + count.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		}
+	}
+}
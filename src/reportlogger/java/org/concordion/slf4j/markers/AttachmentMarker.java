@@ -2,22 +2,43 @@ package org.concordion.slf4j.markers;
 
 import static ch.qos.logback.core.CoreConstants.LINE_SEPARATOR;
 
+import java.io.BufferedOutputStream;
+import java.io.BufferedWriter;
+import java.io.ByteArrayInputStream;
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.OutputStream;
+import java.io.OutputStreamWriter;
 import java.io.Reader;
+import java.io.Writer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.concurrent.Callable;
 
-import org.slf4j.MDC;
+import org.apache.commons.io.FilenameUtils;
+import org.concordion.ext.AttachmentStreamer;
+import org.concordion.ext.AttachmentWriter;
 
 public class AttachmentMarker extends BaseDataMarker<AttachmentMarker> {
 	private static final long serialVersionUID = 5412731321120168078L;
-	private static final String NEXT_FILE_NUMBER = "NEXT_FILE_NUMBER";
+
+	/** Maximum number of characters of a text attachment to include in the log unless a preview limit has been set */
+	public static final int PREVIEW_LIMIT = 64 * 1024;
+	private static final int BUFFER_SIZE = 64 * 1024;
 
 	private final String logFile;
-	private final InputStream stream;
+	private InputStream stream;
+	private transient Callable<String> contentSource = null;
+	private File sourceFile = null;
+	private transient AttachmentStreamer streamer = null;
+	private transient AttachmentWriter writer = null;
+	private transient String preview = null;
+	private transient boolean previewTruncated = false;
 	private final String filename;
 	private final String type;
 	
@@ -30,6 +51,62 @@ public class AttachmentMarker extends BaseDataMarker<AttachmentMarker> {
 		this.type = type;
 	}
 
+	/**
+	 * Creates an attachment whose content is not produced until the log entry is written.
+	 * 
+	 * @param logFile Log file the attachment belongs to
+	 * @param contentSource Produces the content of the attachment
+	 * @param filename Name of the attachment
+	 * @param type Media type of the attachment
+	 */
+	public AttachmentMarker(String logFile, Callable<String> contentSource, String filename, String type) {
+		this(logFile, (InputStream) null, filename, type);
+
+		this.contentSource = contentSource;
+	}
+
+	/**
+	 * Creates an attachment that is copied from an existing file without reading it into memory.
+	 * 
+	 * @param logFile Log file the attachment belongs to
+	 * @param sourceFile File to attach
+	 * @param filename Name of the attachment
+	 * @param type Media type of the attachment
+	 */
+	public AttachmentMarker(String logFile, File sourceFile, String filename, String type) {
+		this(logFile, (InputStream) null, filename, type);
+
+		this.sourceFile = sourceFile;
+	}
+
+	/**
+	 * Creates an attachment whose content is streamed straight to the attachment file when the log entry is written.
+	 * 
+	 * @param logFile Log file the attachment belongs to
+	 * @param filename Name of the attachment
+	 * @param type Media type of the attachment
+	 * @param streamer Writes the content of the attachment
+	 */
+	public AttachmentMarker(String logFile, String filename, String type, AttachmentStreamer streamer) {
+		this(logFile, (InputStream) null, filename, type);
+
+		this.streamer = streamer;
+	}
+
+	/**
+	 * Creates a text attachment whose content is written straight to the attachment file when the log entry is written.
+	 * 
+	 * @param logFile Log file the attachment belongs to
+	 * @param filename Name of the attachment
+	 * @param type Media type of the attachment
+	 * @param writer Writes the content of the attachment
+	 */
+	public AttachmentMarker(String logFile, String filename, String type, AttachmentWriter writer) {
+		this(logFile, (InputStream) null, filename, type);
+
+		this.writer = writer;
+	}
+
 	public String getFile() {
 		return data;
 	}
@@ -50,24 +127,23 @@ public class AttachmentMarker extends BaseDataMarker<AttachmentMarker> {
 		// on the off-chance they have greater/less than characters
 		boolean useXMP = (type.contains("text") || type.contains("xml") || type.contains("json") || type.contains("javascript"));
 		if (useXMP) {
-			// The format of this needs to remain in sync with DataMarker
-			buf.append("<xmp class=\"fadeout\">");
+			String text;
 
 			try {
-				stream.reset();
-
-				final char[] buffer = new char[1024];
-				Reader in = new InputStreamReader(stream, "UTF-8");
-				int len = in.read(buffer, 0, buffer.length);
-				while (len != -1) {
-					buf.append(buffer, 0, len);
-					len = in.read(buffer, 0, buffer.length);
-				}
+				text = getPreview();
 			} catch (IOException e) {
 				// Revert to using object tag
-				buf.append(e.getMessage());
+				text = e.getMessage();
 			}
 
+			// The format of this needs to remain in sync with DataMarker
+			buf.append("<xmp class=\"fadeout\"");
+			if (previewTruncated) {
+				// The rest of the attachment is loaded by the browser when the entry is expanded
+				buf.append(" data-content=\"").append(data).append("\"");
+			}
+			buf.append(">");
+			buf.append(text);
 			buf.append("</xmp>");
 		} else {
 
@@ -104,21 +180,46 @@ public class AttachmentMarker extends BaseDataMarker<AttachmentMarker> {
 	}
 
 	public void writeStream() throws IOException {
-		int fileNumber = getNextFileNumber();
+		if (contentSource != null) {
+			try {
+				stream = new ByteArrayInputStream(contentSource.call().getBytes(StandardCharsets.UTF_8));
+			} catch (IOException e) {
+				throw e;
+			} catch (Exception e) {
+				throw new IOException("Unable to get content for attachment " + filename, e);
+			} finally {
+				contentSource = null;
+			}
+		}
+
+		if (ArtifactStore.isEnabled()) {
+			storeStream();
+			return;
+		}
+
+		int fileNumber = ArtifactAllocator.next(logFile);
 		String baseFile = getBaseFilename();
 
-		OutputStream outputStream = null;
 		File targetFile = new File(buildFileName(baseFile, fileNumber));
 
+		if (sourceFile != null) {
+			copyFile(sourceFile, targetFile);
+			this.data = targetFile.getName();
+			return;
+		}
+
+		if (hasCallback()) {
+			writeCallback(Files.newOutputStream(targetFile.toPath()));
+			this.data = targetFile.getName();
+			return;
+		}
+
+		OutputStream outputStream = null;
+
 		try {
 			outputStream = new FileOutputStream(targetFile);
 			
-			byte[] buffer = new byte[1024];
-			int len = stream.read(buffer);
-			while (len != -1) {
-				outputStream.write(buffer, 0, len);
-			    len = stream.read(buffer);
-			}
+			copy(stream, outputStream);
 			
 			this.data = targetFile.getName();
 		} finally {
@@ -126,21 +227,147 @@ public class AttachmentMarker extends BaseDataMarker<AttachmentMarker> {
 				outputStream.close();
 			}
 		}
+
+		// The content is read back from the file for the preview so the stream is no longer needed
+		stream = null;
 	}
 
-	private int getNextFileNumber() {
-		int nextNumber = -1;
-		String next = MDC.get(NEXT_FILE_NUMBER);
+	/**
+	 * Reads the start of the attachment back from the file it was written to, so that large attachments do not need to be
+	 * held in memory.
+	 * 
+	 * @return The text to display in the log
+	 * @throws IOException If unable to read the attachment
+	 */
+	private String getPreview() throws IOException {
+		if (preview != null) {
+			return preview;
+		}
+
+		if (data == null || data.isEmpty()) {
+			throw new IOException("Attachment " + filename + " has not been written");
+		}
+
+		File file = new File(new File(logFile).getAbsoluteFile().getParentFile(), data);
+		int limit = getPreviewLimit(PREVIEW_LIMIT);
 
-		if (next != null && !next.isEmpty()) {
-			nextNumber = Integer.valueOf(next);
+		if (limit == 0) {
+			limit = Integer.MAX_VALUE - 1;
 		}
 
-		nextNumber++;
-		
-		MDC.put(NEXT_FILE_NUMBER, String.valueOf(nextNumber));
+		StringBuilder text = new StringBuilder();
+		Reader in = new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8);
+
+		try {
+			final char[] buffer = new char[4096];
+			int len;
+
+			// Read one character past the limit to find out if the attachment will be truncated
+			while (text.length() <= limit && (len = in.read(buffer, 0, Math.min(buffer.length, limit + 1 - text.length()))) != -1) {
+				text.append(buffer, 0, len);
+			}
+
+			if (text.length() > limit) {
+				int length = getPreviewLength(text, limit);
+
+				text.setLength(length);
+				appendTruncatedNote(text, length);
+				previewTruncated = true;
+			}
+		} finally {
+			in.close();
+		}
+
+		preview = text.toString();
+
+		return preview;
+	}
+
+	private void copyFile(File source, File target) throws IOException {
+		FileInputStream input = new FileInputStream(source);
+
+		try {
+			FileOutputStream output = new FileOutputStream(target);
+
+			try {
+				FileChannel in = input.getChannel();
+				FileChannel out = output.getChannel();
+				long size = in.size();
+				long position = 0;
+
+				// Lets the operating system copy the file without it passing through the heap
+				while (position < size) {
+					position += in.transferTo(position, size - position, out);
+				}
+			} finally {
+				output.close();
+			}
+		} finally {
+			input.close();
+		}
+	}
+
+	private void storeStream() throws IOException {
+		ArtifactStore.Artifact artifact = ArtifactStore.create(FilenameUtils.getExtension(filename));
+		boolean stored = false;
+
+		try {
+			if (sourceFile != null) {
+				// Content has to pass through the digest so cannot be transferred directly
+				InputStream input = new FileInputStream(sourceFile);
+				try {
+					copy(input, artifact.getOutputStream());
+				} finally {
+					input.close();
+				}
+			} else if (hasCallback()) {
+				writeCallback(artifact.getOutputStream());
+			} else {
+				copy(stream, artifact.getOutputStream());
+				stream = null;
+			}
+
+			this.data = artifact.store(logFile);
+			stored = true;
+		} finally {
+			if (!stored) {
+				artifact.discard();
+			}
+		}
+	}
 
-		return nextNumber;
+	private boolean hasCallback() {
+		return streamer != null || writer != null;
+	}
+
+	/**
+	 * Hands the output to the callback supplied by the caller, the output is closed once the callback has finished.
+	 */
+	private void writeCallback(OutputStream output) throws IOException {
+		OutputStream buffered = new BufferedOutputStream(output, BUFFER_SIZE);
+
+		try {
+			if (writer != null) {
+				Writer out = new BufferedWriter(new OutputStreamWriter(buffered, StandardCharsets.UTF_8));
+				writer.writeTo(out);
+				out.flush();
+			} else {
+				streamer.streamTo(buffered);
+			}
+		} finally {
+			streamer = null;
+			writer = null;
+			buffered.close();
+		}
+	}
+
+	private void copy(InputStream input, OutputStream output) throws IOException {
+		byte[] buffer = new byte[1024];
+		int len = input.read(buffer);
+		while (len != -1) {
+			output.write(buffer, 0, len);
+		    len = input.read(buffer);
+		}
 	}
 
 	private String getBaseFilename() {
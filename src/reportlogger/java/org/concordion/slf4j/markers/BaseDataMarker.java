@@ -1,12 +1,22 @@
 package org.concordion.slf4j.markers;
 
+import static ch.qos.logback.core.CoreConstants.LINE_SEPARATOR;
+
+import java.util.concurrent.Callable;
+
 import org.slf4j.Marker;
 import org.slf4j.helpers.ConcordionMarker;
 
 public abstract class BaseDataMarker<T> extends ConcordionMarker {
 	private static final long serialVersionUID = 8750307001902436743L;
 
+	/** Preview limit that always includes the full content of data and text attachments in the log */
+	public static final int UNLIMITED = -1;
+
+	private static volatile int previewLimit = 0;
+
 	protected String data;
+	private transient volatile Callable<String> dataSource = null;
 
 	public BaseDataMarker(String data) {
 		super(ReportLoggerMarkers.DATA_MARKER_NAME);
@@ -14,6 +24,76 @@ public abstract class BaseDataMarker<T> extends ConcordionMarker {
 		this.data = data;
 	}
 
+	/**
+	 * Creates a marker whose data is not produced until it is first needed, which only happens if the log entry 
+	 * is written by an appender that renders the data.
+	 * 
+	 * @param dataSource Produces the data
+	 */
+	public BaseDataMarker(Callable<String> dataSource) {
+		super(ReportLoggerMarkers.DATA_MARKER_NAME);
+
+		this.dataSource = dataSource;
+	}
+
+	/**
+	 * Sets the maximum number of characters of data and text attachments to include in the log, anything larger is 
+	 * loaded by the browser when the entry is expanded.
+	 * 
+	 * <p>NOTE: This setting applies to all tests running in the JVM.</p>
+	 * 
+	 * @param limit Number of characters, 0 (the default) to include data in full and cap text attachments at 
+	 *        {@link AttachmentMarker#PREVIEW_LIMIT}, or {@link #UNLIMITED} to always include the full content
+	 */
+	public static void setPreviewLimit(int limit) {
+		previewLimit = limit;
+	}
+
+	/**
+	 * @return The value set by {@link #setPreviewLimit(int)}
+	 */
+	public static int getPreviewLimit() {
+		return previewLimit;
+	}
+
+	/**
+	 * @param defaultLimit Limit for this type of content when none has been set, 0 for no limit
+	 * @return The maximum number of characters to include in the log, 0 if there is no limit
+	 */
+	protected static int getPreviewLimit(int defaultLimit) {
+		int limit = previewLimit;
+
+		if (limit == 0) {
+			return defaultLimit;
+		}
+
+		return limit < 0 ? 0 : limit;
+	}
+
+	/**
+	 * @param text Content being previewed
+	 * @param limit Maximum number of characters in the preview
+	 * @return Number of characters to include in the preview, one less than the limit where the limit would otherwise
+	 *         split a surrogate pair
+	 */
+	protected static int getPreviewLength(CharSequence text, int limit) {
+		if (limit > 0 && limit < text.length() && Character.isHighSurrogate(text.charAt(limit - 1))) {
+			return limit - 1;
+		}
+
+		return limit;
+	}
+
+	/**
+	 * Marks the end of a preview that does not include the full content.
+	 * 
+	 * @param text Preview to append the note to
+	 * @param limit Number of characters in the preview
+	 */
+	protected static void appendTruncatedNote(StringBuilder text, int limit) {
+		text.append(LINE_SEPARATOR).append("... (first ").append(limit).append(" characters shown, expand to see the rest)");
+	}
+
 	public abstract String getFormattedData();
 
 	public abstract void prepareData() throws Exception;
@@ -25,6 +105,33 @@ public abstract class BaseDataMarker<T> extends ConcordionMarker {
 	}
 
 	public boolean hasData() {
-		return data != null && !data.isEmpty();
+		String value = getData();
+
+		return value != null && !value.isEmpty();
+	}
+
+	/**
+	 * @return The data, calling the data source the first time this is called if the data is supplied lazily
+	 */
+	protected String getData() {
+		if (dataSource != null) {
+			resolveData();
+		}
+
+		return data;
+	}
+
+	private synchronized void resolveData() {
+		if (dataSource == null) {
+			return;
+		}
+
+		try {
+			data = dataSource.call();
+		} catch (Exception e) {
+			data = "Unable to get data: " + e.getMessage();
+		} finally {
+			dataSource = null;
+		}
 	}
 }
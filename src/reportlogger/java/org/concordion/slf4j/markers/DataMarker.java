@@ -1,21 +1,154 @@
 package org.concordion.slf4j.markers;
 
-import ch.qos.logback.core.helpers.Transform;
+import static ch.qos.logback.core.CoreConstants.LINE_SEPARATOR;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.Callable;
+
+import org.apache.commons.io.FileUtils;
+import org.concordion.logback.html.TransformText;
 
 public class DataMarker extends BaseDataMarker<DataMarker> {
 	private static final long serialVersionUID = -3228456581564867488L;
 
+	private String logFile;
+	private transient Callable<String> logFileSource = null;
+	private transient String contentFile = null;
+
 	public DataMarker(String data) {
+		this((String) null, data);
+	}
+
+	public DataMarker(Callable<String> dataSource) {
+		this((String) null, dataSource);
+	}
+
+	/**
+	 * Creates a marker whose data is written to a file alongside the log if it is larger than the preview limit, so that
+	 * only the start of it is included in the log.
+	 * 
+	 * @param logFile Log file the data belongs to, may be null
+	 * @param data The data
+	 */
+	public DataMarker(String logFile, String data) {
 		super(data);
+
+		this.logFile = logFile;
+	}
+
+	public DataMarker(String logFile, Callable<String> dataSource) {
+		super(dataSource);
+
+		this.logFile = logFile;
+	}
+
+	/**
+	 * Supplies the log file the data belongs to when it is needed, which is only if the data is larger than the preview
+	 * limit and has to be written to a file alongside the log.
+	 * 
+	 * @param logFileSource Returns the path of the log file, or null if there isn't one
+	 * @return A self reference
+	 */
+	public DataMarker withLogFile(Callable<String> logFileSource) {
+		this.logFileSource = logFileSource;
+		return this;
 	}
 
 	@Override
 	public String getFormattedData() {
-		return "<xmp>" + Transform.escapeTags(data) + "</xmp>";
+		String data = getData();
+		int limit = getPreviewLimit(0);
+		String file = null;
+
+		if (limit > 0 && data.length() > limit) {
+			file = getContentFile(data);
+		}
+
+		if (file == null) {
+			StringBuilder buf = new StringBuilder(data.length() + 16);
+
+			buf.append("<xmp>");
+			TransformText.escapeTags(data, buf);
+			buf.append("</xmp>");
+
+			return buf.toString();
+		}
+
+		int length = getPreviewLength(data, limit);
+		StringBuilder text = new StringBuilder(length + 64);
+		text.append(data, 0, length);
+		appendTruncatedNote(text, length);
+
+		StringBuilder buf = new StringBuilder(text.length() + 256);
+
+		// The format of this needs to remain in sync with AttachmentMarker
+		buf.append("<div class=\"attachmentMenu\">").append(LINE_SEPARATOR);
+		buf.append("<a href=\"").append(file).append("\" target=\"_blank\">Open</a>&nbsp;&nbsp;").append(LINE_SEPARATOR);
+		buf.append("<a href=\"#\" onclick=\"toggleContent(this); return false;\">Expand</a>").append(LINE_SEPARATOR);
+		buf.append("</div>").append(LINE_SEPARATOR);
+
+		buf.append("<div class=\"resizeable\">").append(LINE_SEPARATOR);
+		buf.append("<xmp class=\"fadeout\" data-content=\"").append(file).append("\">");
+		TransformText.escapeTags(text, buf);
+		buf.append("</xmp>").append(LINE_SEPARATOR);
+		buf.append("</div>");
+
+		return buf.toString();
 	}
 
 	@Override
 	public void prepareData() {
 
 	}
+
+	/**
+	 * Writes the full data to a file alongside the log the first time it is called.
+	 * 
+	 * @param data The data
+	 * @return Name of the file relative to the log, or null if there is no log or the file could not be written
+	 */
+	private synchronized String getContentFile(String data) {
+		if (contentFile != null) {
+			return contentFile;
+		}
+
+		if (logFile == null && logFileSource != null) {
+			try {
+				logFile = logFileSource.call();
+			} catch (Exception e) {
+				// Include the full data in the log instead
+			}
+
+			logFileSource = null;
+		}
+
+		if (logFile == null || logFile.isEmpty()) {
+			return null;
+		}
+
+		File file = new File(getBaseFilename() + ArtifactAllocator.next(logFile) + "-data.txt");
+
+		try {
+			FileUtils.writeStringToFile(file, data, StandardCharsets.UTF_8);
+		} catch (IOException e) {
+			// Include the full data in the log instead
+			return null;
+		}
+
+		contentFile = file.getName();
+
+		return contentFile;
+	}
+
+	private String getBaseFilename() {
+		int pos = logFile.lastIndexOf('.');
+
+		if (pos > 0) {
+			return logFile.substring(0, pos);
+		} else {
+			return logFile;
+		}
+	}
 }
\ No newline at end of file
@@ -1,5 +1,7 @@
 package org.concordion.slf4j.markers;
 
+import java.util.concurrent.Callable;
+
 public class HtmlMarker extends BaseDataMarker<HtmlMarker> {
 	private static final long serialVersionUID = 5412731321120168078L;
 	
@@ -7,9 +9,13 @@ public class HtmlMarker extends BaseDataMarker<HtmlMarker> {
 		super(html);
 	}
 
+	public HtmlMarker(Callable<String> htmlSource) {
+		super(htmlSource);
+	}
+
 	@Override
 	public String getFormattedData() {
-		return data;
+		return getData();
 	}
 
 	@Override
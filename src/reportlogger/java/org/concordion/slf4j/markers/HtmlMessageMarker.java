@@ -1,13 +1,18 @@
 package org.concordion.slf4j.markers;
 
+import java.util.concurrent.Callable;
+
 import org.slf4j.helpers.ConcordionMarker;
+import org.slf4j.helpers.MessageFormatter;
 
 public class HtmlMessageMarker extends ConcordionMarker {
 	private static final long serialVersionUID = 5412731321120168078L;
 	public static final String MARKER_NAME = "HTML_MESSAGE"; 
-	
+
 	private String format;
 	private Object[] arguments;
+	private transient volatile Callable<String> messageSource = null;
+	private volatile String formattedMessage = null;
 
 	public HtmlMessageMarker(String format, Object... arguments) {
 		super(MARKER_NAME);
@@ -16,11 +21,65 @@ public class HtmlMessageMarker extends ConcordionMarker {
 		this.arguments = arguments;
 	}
 
+	/**
+	 * Creates a marker whose message is not produced until it is first needed.
+	 * 
+	 * @param messageSource Produces the HTML message
+	 */
+	public HtmlMessageMarker(Callable<String> messageSource) {
+		super(MARKER_NAME);
+
+		this.messageSource = messageSource;
+	}
+
+	/**
+	 * @return The message format, or the message itself if it was supplied lazily
+	 */
 	public String getFormat() {
+		if (format == null) {
+			return getFormattedMessage();
+		}
+
 		return format;
 	}
 
 	public Object[] getArguments() {
 		return arguments;
 	}
+
+	/**
+	 * @return The HTML message with the arguments substituted, this is only formatted once no matter how many appenders ask for it
+	 */
+	public String getFormattedMessage() {
+		String message = formattedMessage;
+
+		if (message == null) {
+			message = formatMessage();
+		}
+
+		return message;
+	}
+
+	/**
+	 * The message is stored before the source is released so that a thread waiting on the lock never sees neither.
+	 */
+	private synchronized String formatMessage() {
+		if (formattedMessage != null) {
+			return formattedMessage;
+		}
+
+		if (messageSource == null) {
+			formattedMessage = MessageFormatter.arrayFormat(format, arguments).getMessage();
+			return formattedMessage;
+		}
+
+		try {
+			formattedMessage = messageSource.call();
+		} catch (Exception e) {
+			formattedMessage = "Unable to get message: " + e.getMessage();
+		}
+
+		messageSource = null;
+		return formattedMessage;
+	}
 }
\ No newline at end of file
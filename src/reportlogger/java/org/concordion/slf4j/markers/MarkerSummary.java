@@ -0,0 +1,201 @@
+package org.concordion.slf4j.markers;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+
+import org.slf4j.Marker;
+import org.slf4j.helpers.ConcordionMarker;
+
+/**
+ * Classifies all the markers attached to a log entry in a single walk of the marker graph so that appenders, filters and
+ * listeners can check for the markers they are interested in without each walking the graph again.
+ * 
+ * <p>
+ * When the root marker is a {@link ConcordionMarker} (as it is for all entries logged using the {@link org.concordion.slf4j.ext.FluentLogger})
+ * the summary is cached on the marker and shared by every appender that receives the event.
+ * </p>
+ */
+public final class MarkerSummary {
+	public static final int PROGRESS = 1;
+	public static final int STEP = 1 << 1;
+	public static final int TOOLTIP = 1 << 2;
+	public static final int HTML_MESSAGE = 1 << 3;
+	public static final int DATA = 1 << 4;
+
+	private static final MarkerSummary EMPTY = new MarkerSummary(0, null, Collections.<BaseDataMarker<?>>emptyList(), Collections.<Marker>emptyList());
+
+	private final int flags;
+	private final HtmlMessageMarker htmlMessage;
+	private final List<BaseDataMarker<?>> dataMarkers;
+	private final List<Marker> markers;
+
+	private MarkerSummary(int flags, HtmlMessageMarker htmlMessage, List<BaseDataMarker<?>> dataMarkers, List<Marker> markers) {
+		this.flags = flags;
+		this.htmlMessage = htmlMessage;
+		this.dataMarkers = dataMarkers;
+		this.markers = markers;
+	}
+
+	/**
+	 * Returns the summary for a marker, reusing the summary cached on the marker where possible.
+	 * 
+	 * @param marker Root marker of a log entry, may be null
+	 * @return The summary
+	 */
+	public static MarkerSummary of(Marker marker) {
+		if (marker == null) {
+			return EMPTY;
+		}
+
+		if (marker instanceof ConcordionMarker) {
+			return ((ConcordionMarker) marker).getSummary();
+		}
+
+		return summarise(marker);
+	}
+
+	/**
+	 * Walks the marker graph and builds a new summary, use {@link #of(Marker)} rather than calling this directly.
+	 * 
+	 * @param marker Root marker
+	 * @return The summary
+	 */
+	public static MarkerSummary summarise(Marker marker) {
+		Builder builder = new Builder();
+
+		builder.visit(marker);
+
+		return builder.build();
+	}
+
+	/**
+	 * @param flag One or more of the flag constants on this class
+	 * @return True if any of the markers are present
+	 */
+	public boolean has(int flag) {
+		return (flags & flag) != 0;
+	}
+
+	public boolean isProgress() {
+		return has(PROGRESS);
+	}
+
+	public boolean isStep() {
+		return has(STEP);
+	}
+
+	/**
+	 * @return The first HTML message marker found, or null if there isn't one
+	 */
+	public HtmlMessageMarker getHtmlMessage() {
+		return htmlMessage;
+	}
+
+	/**
+	 * @return Data markers in the order they were found
+	 */
+	public List<BaseDataMarker<?>> getDataMarkers() {
+		return dataMarkers;
+	}
+
+	/**
+	 * Equivalent to {@link Marker#contains(String)} on the root marker.
+	 * 
+	 * @param name Marker name
+	 * @return True if a marker with the name is present
+	 */
+	public boolean contains(String name) {
+		return find(name) != null;
+	}
+
+	/**
+	 * @return Every marker attached to the entry, in the order found searching depth first
+	 */
+	public List<Marker> getMarkers() {
+		return markers;
+	}
+
+	/**
+	 * Checks for several marker names without walking the marker graph again.
+	 * 
+	 * @param names Marker names
+	 * @return True if a marker with any of the names is present
+	 */
+	public boolean containsAny(Set<String> names) {
+		for (int i = 0; i < markers.size(); i++) {
+			if (names.contains(markers.get(i).getName())) {
+				return true;
+			}
+		}
+
+		return false;
+	}
+
+	/**
+	 * @param name Marker name
+	 * @return The first marker with the name, searching depth first, or null if not found
+	 */
+	public Marker find(String name) {
+		if (name == null) {
+			return null;
+		}
+
+		for (int i = 0; i < markers.size(); i++) {
+			Marker marker = markers.get(i);
+
+			if (name.equals(marker.getName())) {
+				return marker;
+			}
+		}
+
+		return null;
+	}
+
+	private static class Builder {
+		private int flags = 0;
+		private HtmlMessageMarker htmlMessage = null;
+		private List<BaseDataMarker<?>> dataMarkers = null;
+		private final List<Marker> markers = new ArrayList<Marker>(4);
+
+		void visit(Marker marker) {
+			markers.add(marker);
+
+			String name = marker.getName();
+
+			if (marker instanceof BaseDataMarker) {
+				flags |= DATA;
+
+				if (dataMarkers == null) {
+					dataMarkers = new ArrayList<BaseDataMarker<?>>(2);
+				}
+				dataMarkers.add((BaseDataMarker<?>) marker);
+			} else if (marker instanceof HtmlMessageMarker) {
+				flags |= HTML_MESSAGE;
+
+				if (htmlMessage == null) {
+					htmlMessage = (HtmlMessageMarker) marker;
+				}
+			} else if (name.equals(ReportLoggerMarkers.PROGRESS_MARKER.getName())) {
+				flags |= PROGRESS;
+			} else if (name.equals(ReportLoggerMarkers.STEP_MARKER.getName())) {
+				flags |= STEP;
+			} else if (name.equals(ReportLoggerMarkers.TOOLTIP_MARKER.getName())) {
+				flags |= TOOLTIP;
+			}
+
+			Iterator<Marker> references = marker.iterator();
+			while (references.hasNext()) {
+				visit(references.next());
+			}
+		}
+
+		MarkerSummary build() {
+			List<BaseDataMarker<?>> data = dataMarkers == null ? Collections.<BaseDataMarker<?>>emptyList() : Collections.unmodifiableList(dataMarkers);
+
+			return new MarkerSummary(flags, htmlMessage, data, Collections.unmodifiableList(markers));
+		}
+	}
+}
@@ -1,21 +1,21 @@
 package org.concordion.slf4j.markers;
 
 import java.awt.Dimension;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
 
 import org.concordion.ext.ScreenshotTaker;
-import org.slf4j.MDC;
 
 public class ScreenshotMarker extends BaseDataMarker<ScreenshotMarker> {
 	private static final long serialVersionUID = 5412731321120168078L;
-	private static final String NEXT_FILE_NUMBER = "NEXT_FILE_NUMBER";
 
 	private final String logFile;
 	private final ScreenshotTaker screenshotTaker;
 	private Dimension imageSize;
+	private String thumbnail = null;
 	
 	public ScreenshotMarker(String logFile, ScreenshotTaker screenshotTaker) {
 		super("");
@@ -38,29 +38,29 @@ public class ScreenshotMarker extends BaseDataMarker<ScreenshotMarker> {
 
 		buf.append("<a href=\"").append(data).append("\">");
 		buf.append("<img");
-		buf.append(" src=\"").append(data).append("\"");
+
+		if (thumbnail == null) {
+			buf.append(" src=\"").append(data).append("\"");
+		} else {
+			// The popup loads the full image when it is first shown
+			buf.append(" src=\"").append(thumbnail).append("\"");
+			buf.append(" data-full=\"").append(data).append("\"");
+			buf.append(" onerror=\"showFullImage(this)\"");
+		}
+
+		buf.append(" loading=\"lazy\" decoding=\"async\"");
 		buf.append(" onMouseOver=\"showScreenPopup(this);this.style.cursor='pointer'\"");
 		buf.append(" onMouseOut=\"hideScreenPopup();this.style.cursor='default'\"");
 
-		if (imageSize.width * 1.15 > imageSize.height) {
-			int displaySize = 350;
-
-			if (imageSize.width < displaySize) {
-				displaySize = imageSize.width;
-			}
+		Dimension displaySize = Thumbnail.getDisplaySize(imageSize);
 
-			buf.append(" width=\"").append(displaySize).append("px\" ");
+		if (imageSize.width * 1.15 > imageSize.height) {
+			buf.append(" width=\"").append(displaySize.width).append("px\" ");
 			buf.append(" class=\"");
 			buf.append("sizewidth");
 			buf.append("\"");
 		} else {
-			int displaySize = 200;
-
-			if (imageSize.height < displaySize) {
-				displaySize = imageSize.height;
-			}
-
-			buf.append(" height=\"").append(displaySize).append("px\" ");
+			buf.append(" height=\"").append(displaySize.height).append("px\" ");
 			buf.append(" class=\"");
 			buf.append("sizeheight");
 			buf.append("\"");
@@ -78,10 +78,28 @@ public class ScreenshotMarker extends BaseDataMarker<ScreenshotMarker> {
 	}
 
 	public void writeScreenshot() throws IOException {
-		int fileNumber = getNextFileNumber();
+		if (ArtifactStore.isEnabled()) {
+			storeScreenshot();
+			return;
+		}
+
+		int fileNumber = ArtifactAllocator.next(logFile);
 		String baseFile = getBaseFilename();
 
 		File screenshot = new File(buildFileName(baseFile, fileNumber));
+
+		if (ArtifactWriter.isAsynchronous()) {
+			// Only capture the screenshot on this thread, the file is written in the background
+			ByteArrayOutputStream content = new ByteArrayOutputStream();
+
+			this.imageSize = screenshotTaker.writeScreenshotTo(content);
+			this.data = screenshot.getName();
+
+			ArtifactWriter.write(logFile, screenshot, content);
+			createThumbnail(content);
+			return;
+		}
+
 		OutputStream outputStream = null;
 
 		try {
@@ -93,21 +111,52 @@ public class ScreenshotMarker extends BaseDataMarker<ScreenshotMarker> {
 				outputStream.close();
 			}
 		}
+
+		createThumbnail(null);
 	}
 
-	private int getNextFileNumber() {
-		int nextNumber = -1;
-		String next = MDC.get(NEXT_FILE_NUMBER);
+	private void storeScreenshot() throws IOException {
+		if (ArtifactWriter.isAsynchronous()) {
+			ByteArrayOutputStream content = new ByteArrayOutputStream();
 
-		if (next != null && !next.isEmpty()) {
-			nextNumber = Integer.valueOf(next);
+			this.imageSize = screenshotTaker.writeScreenshotTo(content);
+			this.data = ArtifactStore.store(logFile, screenshotTaker.getFileExtension(), content);
+			createThumbnail(content);
+			return;
 		}
 
-		nextNumber++;
-		
-		MDC.put(NEXT_FILE_NUMBER, String.valueOf(nextNumber));
+		ArtifactStore.Artifact artifact = ArtifactStore.create(screenshotTaker.getFileExtension());
+		boolean stored = false;
+
+		try {
+			this.imageSize = screenshotTaker.writeScreenshotTo(artifact.getOutputStream());
+			this.data = artifact.store(logFile);
+			stored = true;
+		} finally {
+			if (!stored) {
+				artifact.discard();
+			}
+		}
+
+		createThumbnail(null);
+	}
+
+	/**
+	 * Queues writing a thumbnail if the screenshot is larger than it will be displayed.
+	 * 
+	 * @param content The screenshot if still held in memory, otherwise it is read back from file
+	 */
+	private void createThumbnail(ByteArrayOutputStream content) {
+		if (imageSize == null || !Thumbnail.isRequired(imageSize)) {
+			return;
+		}
+
+		// Data is relative to the folder holding the log file
+		File image = new File(new File(logFile).getAbsoluteFile().getParentFile(), data);
+
+		ArtifactWriter.submit(logFile, new Thumbnail(image, content, Thumbnail.getDisplaySize(imageSize), screenshotTaker.getFileExtension()));
 
-		return nextNumber;
+		this.thumbnail = Thumbnail.getName(data);
 	}
 
 	private String getBaseFilename() {
@@ -0,0 +1,144 @@
+package org.concordion.slf4j.markers;
+
+import java.awt.Dimension;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+
+import javax.imageio.ImageIO;
+
+import org.apache.commons.io.FileUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Writes a scaled down copy of a screenshot for display in the log so that the browser does not have to load and
+ * decode every full size screenshot when the log is opened.
+ */
+final class Thumbnail implements Runnable {
+	private static final Logger LOGGER = LoggerFactory.getLogger(Thumbnail.class);
+
+	static final int MAX_WIDTH = 350;
+	static final int MAX_HEIGHT = 200;
+	private static final String SUFFIX = "-thumb";
+
+	private final File image;
+	private final ByteArrayOutputStream content;
+	private final File target;
+	private final Dimension size;
+	private final String format;
+
+	/**
+	 * @param image Full size image file, read if the content is not supplied
+	 * @param content Full size image if it is still held in memory, may be null
+	 * @param size Size of the thumbnail
+	 * @param format Image format, eg png
+	 */
+	Thumbnail(File image, ByteArrayOutputStream content, Dimension size, String format) {
+		this.image = image;
+		this.content = content;
+		this.target = new File(image.getParentFile(), getName(image.getName()));
+		this.size = size;
+		this.format = format;
+	}
+
+	/**
+	 * Screenshots are displayed at a fixed width when wider than they are tall and at a fixed height otherwise.
+	 * 
+	 * @param imageSize Size of the full image
+	 * @return Size to display the image at in the log
+	 */
+	static Dimension getDisplaySize(Dimension imageSize) {
+		if (imageSize.width * 1.15 > imageSize.height) {
+			int width = Math.min(MAX_WIDTH, imageSize.width);
+			return new Dimension(width, Math.max(1, (int) Math.round(imageSize.height * (width / (double) imageSize.width))));
+		}
+
+		int height = Math.min(MAX_HEIGHT, imageSize.height);
+		return new Dimension(Math.max(1, (int) Math.round(imageSize.width * (height / (double) imageSize.height))), height);
+	}
+
+	/**
+	 * @param imageSize Size of the full image
+	 * @return True if the image is larger than it will be displayed in the log
+	 */
+	static boolean isRequired(Dimension imageSize) {
+		Dimension display = getDisplaySize(imageSize);
+
+		return display.width < imageSize.width || display.height < imageSize.height;
+	}
+
+	/**
+	 * @param name File name or path of the full image
+	 * @return File name or path of the thumbnail
+	 */
+	static String getName(String name) {
+		int pos = name.lastIndexOf('.');
+
+		if (pos > 0 && pos > name.lastIndexOf('/') && pos > name.lastIndexOf('\\')) {
+			return name.substring(0, pos) + SUFFIX + name.substring(pos);
+		}
+
+		return name + SUFFIX;
+	}
+
+	@Override
+	public void run() {
+		try {
+			write();
+		} catch (IOException e) {
+			LOGGER.error("Unable to write thumbnail " + target, e);
+		}
+	}
+
+	void write() throws IOException {
+		if (target.exists()) {
+			// Content addressed screenshots share their thumbnail, this only saves the work as the move below is safe anyway
+			return;
+		}
+
+		BufferedImage source;
+
+		if (content != null) {
+			source = ImageIO.read(new ByteArrayInputStream(content.toByteArray()));
+		} else {
+			source = ImageIO.read(image);
+		}
+
+		if (source == null) {
+			throw new IOException("Unrecognised image format for " + image);
+		}
+
+		boolean alpha = source.getColorModel().hasAlpha() && !"jpg".equalsIgnoreCase(format) && !"jpeg".equalsIgnoreCase(format);
+		BufferedImage scaled = new BufferedImage(size.width, size.height, alpha ? BufferedImage.TYPE_INT_ARGB : BufferedImage.TYPE_INT_RGB);
+		Graphics2D graphics = scaled.createGraphics();
+
+		try {
+			graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+			graphics.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+			graphics.drawImage(source, 0, 0, size.width, size.height, null);
+		} finally {
+			graphics.dispose();
+		}
+
+		// Written to a temporary file first so the log never picks up a partly written thumbnail
+		File tempFile = File.createTempFile("thumbnail", ".tmp", target.getParentFile());
+
+		try {
+			if (!ImageIO.write(scaled, format, tempFile)) {
+				throw new IOException("No image writer found for format " + format);
+			}
+
+			// Another thread may be writing the same thumbnail, either copy is as good as the other
+			Files.move(tempFile.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING);
+		} finally {
+			FileUtils.deleteQuietly(tempFile);
+		}
+	}
+}
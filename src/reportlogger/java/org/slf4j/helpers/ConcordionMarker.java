@@ -1,21 +1,253 @@
 package org.slf4j.helpers;
 
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+import org.concordion.slf4j.markers.MarkerSummary;
+import org.slf4j.Marker;
+
 /**
- * Implements a reusable marker. Only required because SLF4Js BasicMarker constructor is not visible outside of the package org.slf4j.Marker.
- * 
+ * Implements a reusable marker. Originally required because SLF4Js BasicMarker constructor is not visible outside of the package org.slf4j.Marker.
+ *
+ * <p>
+ * Unlike BasicMarker, references are held in a plain array that is only allocated once a reference is added, so markers
+ * that never have children (such as data markers) cost no more than their name. The array is replaced rather than modified
+ * whenever references are added or removed so iterating over the references is safe from any thread.
+ * </p>
+ *
  * @author Andrew Sumner
  */
-public class ConcordionMarker extends BasicMarker {
+public class ConcordionMarker implements Marker {
 
 	private static final long serialVersionUID = 6450408083626831104L;
+	private static final Marker[] NO_REFERENCES = new Marker[0];
+
+	private final String name;
+	private volatile Marker[] references = NO_REFERENCES;
+	private transient volatile MarkerSummary summary = null;
 
 	/***
 	 * Note: Name must be distinct for each marker associated with a log entry, otherwise Logback will treat it as a duplicate ignore it.
-	 * 
+	 *
 	 * @param name
 	 */
 	public ConcordionMarker(String name) {
-		super(name);
+		if (name == null) {
+			throw new IllegalArgumentException("A marker name cannot be null");
+		}
+
+		this.name = name;
+	}
+
+	@Override
+	public String getName() {
+		return name;
+	}
+
+	@Override
+	public void add(Marker reference) {
+		addReference(reference);
+	}
+
+	/**
+	 * Adds a reference to this marker unless this marker already contains a marker with the same name, or adding it would create a cycle.
+	 *
+	 * @param reference Marker to add
+	 * @return True if the reference was added, false if it was ignored
+	 */
+	public synchronized boolean addReference(Marker reference) {
+		if (reference == null) {
+			throw new IllegalArgumentException("A null value cannot be added to a Marker as reference.");
+		}
+
+		Marker[] current = references;
+		boolean nested = false;
+
+		if (reference == this || name.equals(reference.getName())) {
+			return false;
+		}
+
+		for (Marker child : current) {
+			if (child == reference || child.getName().equals(reference.getName())) {
+				return false;
+			}
+
+			nested |= child.hasReferences();
+		}
+
+		// Only need to search deeper if the graph is more than one level deep
+		if (nested && contains(reference)) {
+			return false;
+		}
+
+		if (reference.hasReferences() && reference.contains(this)) {
+			return false;
+		}
+
+		Marker[] updated = Arrays.copyOf(current, current.length + 1);
+		updated[current.length] = reference;
+
+		references = updated;
+		summary = null;
+
+		return true;
+	}
+
+	@Override
+	public synchronized boolean remove(Marker referenceToRemove) {
+		Marker[] current = references;
+
+		for (int i = 0; i < current.length; i++) {
+			if (current[i].equals(referenceToRemove)) {
+				Marker[] updated = new Marker[current.length - 1];
+
+				System.arraycopy(current, 0, updated, 0, i);
+				System.arraycopy(current, i + 1, updated, i, current.length - i - 1);
+
+				references = updated;
+				summary = null;
+
+				return true;
+			}
+		}
+
+		return false;
+	}
+
+	@Override
+	@Deprecated
+	public boolean hasChildren() {
+		return hasReferences();
+	}
+
+	@Override
+	public boolean hasReferences() {
+		return references.length > 0;
+	}
+
+	@Override
+	public Iterator<Marker> iterator() {
+		return new ReferenceIterator(references);
 	}
 
+	@Override
+	public boolean contains(Marker other) {
+		if (other == null) {
+			throw new IllegalArgumentException("Other cannot be null");
+		}
+
+		if (this.equals(other)) {
+			return true;
+		}
+
+		for (Marker child : references) {
+			if (child.contains(other)) {
+				return true;
+			}
+		}
+
+		return false;
+	}
+
+	@Override
+	public boolean contains(String name) {
+		if (name == null) {
+			throw new IllegalArgumentException("Other cannot be null");
+		}
+
+		if (this.name.equals(name)) {
+			return true;
+		}
+
+		for (Marker child : references) {
+			if (child.contains(name)) {
+				return true;
+			}
+		}
+
+		return false;
+	}
+
+	/**
+	 * The summary is built the first time it is requested and then reused until another marker is added to this one.
+	 *
+	 * @return A summary of this marker and all the markers it references
+	 */
+	public MarkerSummary getSummary() {
+		MarkerSummary result = summary;
+
+		if (result == null) {
+			result = MarkerSummary.summarise(this);
+			summary = result;
+		}
+
+		return result;
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (this == obj) {
+			return true;
+		}
+
+		if (!(obj instanceof Marker)) {
+			return false;
+		}
+
+		return name.equals(((Marker) obj).getName());
+	}
+
+	@Override
+	public int hashCode() {
+		return name.hashCode();
+	}
+
+	@Override
+	public String toString() {
+		Marker[] current = references;
+
+		if (current.length == 0) {
+			return name;
+		}
+
+		StringBuilder sb = new StringBuilder(name).append(" [ ");
+
+		for (int i = 0; i < current.length; i++) {
+			if (i > 0) {
+				sb.append(", ");
+			}
+			sb.append(current[i].getName());
+		}
+
+		return sb.append(" ]").toString();
+	}
+
+	private static class ReferenceIterator implements Iterator<Marker> {
+		private final Marker[] references;
+		private int index = 0;
+
+		ReferenceIterator(Marker[] references) {
+			this.references = references;
+		}
+
+		@Override
+		public boolean hasNext() {
+			return index < references.length;
+		}
+
+		@Override
+		public Marker next() {
+			if (index >= references.length) {
+				throw new NoSuchElementException();
+			}
+
+			return references[index++];
+		}
+
+		@Override
+		public void remove() {
+			throw new UnsupportedOperationException();
+		}
+	}
 }
@@ -81,16 +81,87 @@ function toggleStackTrace(stackTraceNumber) {
 		makeInvisible(stackTrace);
 		stackTraceButton.value = "View Stack";
 	} else {
+		buildStackTrace(stackTrace, stackTraceNumber);
 		makeVisible(stackTrace);
 		stackTraceButton.value = "Hide Stack";
 	}
 }
 
+/* Frames written by the lazyStackTraces option are only added to the page the first time the stack trace is viewed */
+function buildStackTrace(stackTrace, stackTraceNumber) {
+	var data = getElementById("stackTraceData" + stackTraceNumber);
+
+	if (data == null) {
+		return;
+	}
+
+	var frames = data.text.split(/\r?\n/);
+	var fragment = document.createDocumentFragment();
+
+	for (var i = 0; i < frames.length; i++) {
+		if (frames[i].length == 0) {
+			continue;
+		}
+
+		var entry = document.createElement("div");
+		entry.className = "stackTraceEntry";
+		entry.textContent = frames[i].replace(/<\\\//g, "</");
+		fragment.appendChild(entry);
+	}
+
+	data.parentNode.removeChild(data);
+	stackTrace.insertBefore(fragment, stackTrace.firstChild);
+}
+
+/* Flight Recorder Toggling */
+function toggleFlightRecorder(toggleRow) {
+	var recorded = toggleRow.parentElement.nextElementSibling;
+	var action = toggleRow.getElementsByTagName("span")[0];
+
+	if (hasClass(recorded, "expanded")) {
+		removeClass(recorded, "expanded");
+		action.innerHTML = "Show";
+	} else {
+		addClass(recorded, "expanded");
+		action.innerHTML = "Hide";
+	}
+}
+
 /* Image popup */
+var screenPopupSource = null;
+
+/* Thumbnails are written in the background, show the full image if one is missing or could not be written */
+function showFullImage(img) {
+	var full = img.getAttribute('data-full');
+
+	img.onerror = null;
+
+	if (full && img.getAttribute('src') != full) {
+		img.src = full;
+	}
+}
+
 function showScreenPopup(src) {
 	var img = document.getElementById('ScreenshotPopup');
-	img.src = src.src
+	var full = src.getAttribute('data-full') || src.getAttribute('src');
+
+	screenPopupSource = src;
+
+	if (img.getAttribute('src') != full || !img.complete) {
+		// The log only holds thumbnails, the full size image is loaded the first time it is needed
+		img.onload = function() {
+			if (screenPopupSource == src) {
+				positionScreenPopup(src, img);
+			}
+		};
+		img.src = full;
+		return;
+	}
+
+	positionScreenPopup(src, img);
+}
 
+function positionScreenPopup(src, img) {
 	var scrollTop = Math.max(document.body.scrollTop, document.documentElement.scrollTop);
 	var scrollLeft = Math.max(document.body.scrollLeft, document.documentElement.scrollLeft);
 	var viewportWidth = window.innerWidth || document.documentElement.clientWidth || document.body.clientWidth;
@@ -147,6 +218,7 @@ function showScreenPopup(src) {
 }
 
 function hideScreenPopup() {
+	screenPopupSource = null;
 	document.getElementById('ScreenshotPopup').style.visibility = 'hidden';
 }
 
@@ -242,6 +314,7 @@ function toggleContent(el) {
 					addClass(resizeEl, "fadeout");
 				} else {
 					removeClass(resizeEl, "fadeout");
+					loadContent(resizeEl);
 				}
 			}			
 
@@ -252,6 +325,34 @@ function toggleContent(el) {
 	}
 }
 
+/* Replace a preview with the full content, which is kept in a separate file when large */
+function loadContent(el) {
+	var src = el.getAttribute("data-content");
+
+	if (src == null) {
+		return;
+	}
+
+	el.removeAttribute("data-content");
+
+	var request = new XMLHttpRequest();
+
+	request.onreadystatechange = function() {
+		// Local files report a status of 0
+		if (request.readyState == 4 && (request.status == 200 || (request.status == 0 && request.responseText))) {
+			el.textContent = request.responseText;
+		}
+	};
+
+	try {
+		request.open("GET", src, true);
+		request.overrideMimeType("text/plain; charset=utf-8");
+		request.send();
+	} catch (e) {
+		// Browser will not read local files, the preview is left in place and the full content can still be opened
+	}
+}
+
 function viewport() {
 	var e = window, a = 'inner';
 	if (!('innerWidth' in window )) {
@@ -0,0 +1,69 @@
+package org.concordion.ext.loggingFormatter;
+
+import static org.hamcrest.CoreMatchers.*;
+import static org.junit.Assert.assertThat;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.apache.commons.io.FileUtils;
+import org.concordion.logback.html.HTMLFileAppender;
+import org.concordion.slf4j.BaseLoggingAdaptor;
+import org.concordion.slf4j.ext.FluentLogger;
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class LoggingFormatterSpecificationListenerTest {
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private final LoggingFormatterSpecificationListener listener = new LoggingFormatterSpecificationListener(new BaseLoggingAdaptor() {
+		@Override
+		public File getLogFile() {
+			return new File("");
+		}
+
+		@Override
+		public boolean logFileExists() {
+			return false;
+		}
+
+		@Override
+		public void startLogFile(String logPath) {
+		}
+
+		@Override
+		public void startSpecificationLogFile(String resourcePath) {
+		}
+
+		@Override
+		public void startExampleLogFile(String resourcePath, String exampleName) {
+		}
+
+		@Override
+		public void stopLogFile() {
+		}
+	});
+
+	@After
+	public void removeLoggingAdaptor() {
+		FluentLogger.removeLoggingAdaptor();
+	}
+
+	@Test
+	public void linksToLogFileWhenNotSplit() throws IOException {
+		File logFile = folder.newFile("testLog.html");
+
+		assertThat(listener.createViewer(logFile), is("testLog.html"));
+	}
+
+	@Test
+	public void linksToIndexWhenLogIsSplitIntoParts() throws IOException {
+		File logFile = folder.newFile("testLog.html");
+		FileUtils.touch(HTMLFileAppender.getIndexFile(logFile));
+
+		assertThat(listener.createViewer(logFile), is("testLog-index.html"));
+	}
+}
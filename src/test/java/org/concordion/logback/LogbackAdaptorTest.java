@@ -3,7 +3,10 @@ package org.concordion.logback;
 import static org.hamcrest.CoreMatchers.*;
 import static org.junit.Assert.assertThat;
 
+import java.io.ByteArrayInputStream;
 import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.Callable;
@@ -13,19 +16,121 @@ import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
 
 import org.concordion.logback.LogbackAdaptor;
+import org.concordion.slf4j.ext.FluentLogger;
+import org.concordion.slf4j.ext.MediaType;
+import org.concordion.slf4j.ext.ReportLogger;
+import org.concordion.slf4j.ext.ReportLoggerFactory;
+import org.junit.After;
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.TemporaryFolder;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import ch.qos.logback.classic.LoggerContext;
+import ch.qos.logback.classic.joran.JoranConfigurator;
+import ch.qos.logback.classic.sift.SiftingAppender;
+import ch.qos.logback.classic.util.ContextInitializer;
+
 public class LogbackAdaptorTest {
 	private static final int THREAD_LIMIT = 5;
 	private static final int THREAD_POOL = 20;
+	private static final String WRITE_ON_FAILURE_CONFIGURATION = "<configuration>"
+			+ "<appender name='HTML-FILE-PER-TEST' class='ch.qos.logback.classic.sift.SiftingAppender'>"
+			+ "<discriminator><key>testname</key><defaultValue>build/testrun</defaultValue></discriminator>"
+			+ "<sift><appender name='FILE-${testname}' class='org.concordion.logback.html.HTMLFileAppender'>"
+			+ "<file>${testname}Log.html</file><append>false</append><writeOnFailure>true</writeOnFailure>"
+			+ "<encoder class='org.concordion.logback.html.HTMLEncoder'><layout class='org.concordion.logback.html.HTMLLayout'>"
+			+ "<pattern>%level%message</pattern></layout></encoder>"
+			+ "</appender></sift></appender>"
+			+ "<root level='DEBUG'><appender-ref ref='HTML-FILE-PER-TEST' /></root>"
+			+ "</configuration>";
 	
 	@Rule
 	public TemporaryFolder folder = new TemporaryFolder();
 
+	@After
+	public void restoreLoggerConfiguration() throws Exception {
+		FluentLogger.removeLoggingAdaptor();
+
+		LoggerContext loggerContext = (LoggerContext) LoggerFactory.getILoggerFactory();
+		loggerContext.reset();
+		new ContextInitializer(loggerContext).autoConfig();
+	}
+
+	@Test
+	public void attachmentIsWrittenAlongsidePendingLog() throws Exception {
+		configure(WRITE_ON_FAILURE_CONFIGURATION);
+
+		LogbackAdaptor adaptor = new LogbackAdaptor();
+		FluentLogger.addLoggingAdaptor(adaptor);
+
+		String test = folder.getRoot().getAbsolutePath().replace('\\', '/') + "/pending";
+		File log = new File(test + "Log.html");
+		File attachment = new File(test + "Log0-data.txt");
+
+		adaptor.startLogFile(test);
+		try {
+			ReportLogger logger = ReportLoggerFactory.getReportLogger(LogbackAdaptorTest.class);
+
+			// Asking for the log file must not start the test's appender
+			assertThat(adaptor.getLogFile(), is(log));
+			assertThat(folder.getRoot().list().length, is(0));
+			assertThat(getSiftingAppender().getAppenderTracker().find(test), is(nullValue()));
+
+			logger.with().message("attached").attachment("content", "data.txt", MediaType.PLAIN_TEXT).debug();
+
+			assertThat(adaptor.getLogFile(), is(log));
+			assertThat(adaptor.logFileExists(), is(false));
+			assertThat(attachment.exists(), is(true));
+			assertThat(folder.getRoot().list(), is(new String[] { attachment.getName() }));
+
+			logger.error("failed");
+
+			assertThat(adaptor.logFileExists(), is(true));
+			assertThat(new String(Files.readAllBytes(log.toPath()), StandardCharsets.UTF_8), containsString(attachment.getName()));
+		} finally {
+			adaptor.stopLogFile();
+		}
+	}
+
+	@Test
+	public void outcomeDecidesWhetherPendingLogIsWritten() throws Exception {
+		configure(WRITE_ON_FAILURE_CONFIGURATION);
+
+		LogbackAdaptor adaptor = new LogbackAdaptor();
+		Logger logger = LoggerFactory.getLogger(LogbackAdaptorTest.class);
+
+		File passed = new File(folder.getRoot(), "passedLog.html");
+		adaptor.startLogFile(new File(folder.getRoot(), "passed").getPath());
+		logger.debug("passing");
+		adaptor.testCompleted(false);
+		adaptor.stopLogFile();
+
+		File failed = new File(folder.getRoot(), "failedLog.html");
+		adaptor.startLogFile(new File(folder.getRoot(), "failed").getPath());
+		logger.debug("failing");
+		adaptor.testCompleted(true);
+		adaptor.stopLogFile();
+
+		assertThat(passed.exists(), is(false));
+		assertThat(new String(Files.readAllBytes(failed.toPath()), StandardCharsets.UTF_8), containsString("failing"));
+	}
+
+	private SiftingAppender getSiftingAppender() {
+		LoggerContext loggerContext = (LoggerContext) LoggerFactory.getILoggerFactory();
+
+		return (SiftingAppender) loggerContext.getLogger(org.slf4j.Logger.ROOT_LOGGER_NAME).getAppender("HTML-FILE-PER-TEST");
+	}
+
+	private void configure(String configuration) throws Exception {
+		LoggerContext loggerContext = (LoggerContext) LoggerFactory.getILoggerFactory();
+		JoranConfigurator configurator = new JoranConfigurator();
+		configurator.setContext(loggerContext);
+		loggerContext.reset();
+		configurator.doConfigure(new ByteArrayInputStream(configuration.getBytes(StandardCharsets.UTF_8)));
+	}
+
 	@Test
 	public void logginExtensionHandlesThreadingTest() throws InterruptedException, ExecutionException {
 		ExecutorService executor = Executors.newFixedThreadPool(THREAD_LIMIT);
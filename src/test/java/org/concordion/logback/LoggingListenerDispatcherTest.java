@@ -0,0 +1,125 @@
+package org.concordion.logback;
+
+import static org.hamcrest.CoreMatchers.*;
+import static org.junit.Assert.assertThat;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+import org.slf4j.Marker;
+import org.slf4j.MarkerFactory;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.LoggerContext;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.classic.spi.LoggingEvent;
+
+public class LoggingListenerDispatcherTest {
+	private final Logger logger = new LoggerContext().getLogger(Logger.ROOT_LOGGER_NAME);
+
+	@Test
+	public void eventsAreOnlyDeliveredToInterestedListeners() {
+		LoggingListenerDispatcher dispatcher = LoggingListenerDispatcher.attach(logger);
+		RecordingListener storyboard = register(dispatcher, "STORYBOARD", "STORYBOARD_CONTAINER");
+		RecordingListener tooltip = register(dispatcher, "TOOLTIP");
+		RecordingListener everything = register(dispatcher);
+
+		Marker marker = MarkerFactory.getDetachedMarker("STORYBOARD");
+		marker.add(MarkerFactory.getDetachedMarker("STORYBOARD_CONTAINER"));
+
+		dispatcher.doAppend(event("both", marker));
+		dispatcher.doAppend(event("tooltip", MarkerFactory.getDetachedMarker("TOOLTIP")));
+		dispatcher.doAppend(event("plain", null));
+
+		assertThat(storyboard.messages, is(list("both")));
+		assertThat(tooltip.messages, is(list("tooltip")));
+		assertThat(everything.messages, is(list("both", "tooltip", "plain")));
+	}
+
+	@Test
+	public void eventsFromOtherThreadsAreIgnored() throws InterruptedException {
+		final LoggingListenerDispatcher dispatcher = LoggingListenerDispatcher.attach(logger);
+		RecordingListener listener = register(dispatcher, "STORYBOARD");
+
+		Thread thread = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				dispatcher.doAppend(event("other thread", MarkerFactory.getDetachedMarker("STORYBOARD")));
+			}
+		});
+		thread.start();
+		thread.join();
+
+		assertThat(listener.messages.isEmpty(), is(true));
+	}
+
+	@Test
+	public void registeringAgainReplacesRegistration() {
+		LoggingListenerDispatcher dispatcher = LoggingListenerDispatcher.attach(logger);
+		RecordingListener listener = register(dispatcher, "STORYBOARD");
+
+		assertThat(LoggingListenerDispatcher.attach(logger), is(sameInstance(dispatcher)));
+
+		dispatcher.register(listener, Thread.currentThread().getId());
+		dispatcher.doAppend(event("once", MarkerFactory.getDetachedMarker("STORYBOARD")));
+
+		assertThat(listener.messages, is(list("once")));
+	}
+
+	private RecordingListener register(LoggingListenerDispatcher dispatcher, String... markers) {
+		RecordingListener listener = new RecordingListener(markers);
+
+		listener.start();
+		dispatcher.register(listener, Thread.currentThread().getId());
+
+		return listener;
+	}
+
+	private LoggingEvent event(String message, Marker marker) {
+		LoggingEvent event = new LoggingEvent(LoggingListenerDispatcherTest.class.getName(), logger, Level.INFO, message, null, null);
+		event.setMarker(marker);
+
+		return event;
+	}
+
+	private List<String> list(String... values) {
+		List<String> list = new ArrayList<String>();
+
+		for (String value : values) {
+			list.add(value);
+		}
+
+		return list;
+	}
+
+	private static class RecordingListener extends LoggingListener {
+		private final String[] markers;
+		private final List<String> messages = new ArrayList<String>();
+
+		RecordingListener(String... markers) {
+			this.markers = markers;
+		}
+
+		@Override
+		protected void append(ILoggingEvent event) {
+			messages.add(event.getMessage());
+		}
+
+		@Override
+		public String[] getFilterMarkers() {
+			return markers;
+		}
+
+		@Override
+		public Marker getConcordionEventMarker() {
+			return null;
+		}
+
+		@Override
+		public boolean getHandleFailureAndThrowableEvents() {
+			return true;
+		}
+	}
+}
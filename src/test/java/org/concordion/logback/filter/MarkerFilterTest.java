@@ -0,0 +1,92 @@
+package org.concordion.logback.filter;
+
+import static org.hamcrest.CoreMatchers.*;
+import static org.junit.Assert.assertThat;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.Test;
+import org.slf4j.Marker;
+import org.slf4j.MarkerFactory;
+import org.slf4j.helpers.ConcordionMarker;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.LoggerContext;
+import ch.qos.logback.classic.spi.LoggingEvent;
+import ch.qos.logback.core.spi.FilterReply;
+
+public class MarkerFilterTest {
+	private final Logger logger = new LoggerContext().getLogger(MarkerFilterTest.class);
+
+	@Test
+	public void matchesNestedMarkers() {
+		MarkerFilter filter = newFilter("STORYBOARD", "SCREENSHOT");
+
+		Marker marker = MarkerFactory.getDetachedMarker("DATA");
+		marker.add(MarkerFactory.getDetachedMarker("SCREENSHOT"));
+
+		assertThat(filter.decide(event(marker)), is(FilterReply.ACCEPT));
+		assertThat(filter.decide(event(MarkerFactory.getDetachedMarker("OTHER"))), is(FilterReply.DENY));
+		assertThat(filter.decide(event(null)), is(FilterReply.DENY));
+	}
+
+	@Test
+	public void matchesMarkersNestedInConcordionMarker() {
+		MarkerFilter filter = newFilter("SCREENSHOT");
+
+		Marker marker = new ConcordionMarker("CONCORDION");
+		marker.add(MarkerFactory.getDetachedMarker("SCREENSHOT"));
+
+		assertThat(filter.decide(event(marker)), is(FilterReply.ACCEPT));
+		assertThat(filter.decide(event(new ConcordionMarker("CONCORDION"))), is(FilterReply.DENY));
+	}
+
+	@Test
+	public void markersAddedAfterStartAreUsed() {
+		MarkerFilter filter = newFilter("STORYBOARD");
+
+		filter.setMarker("TOOLTIP");
+
+		assertThat(filter.decide(event(MarkerFactory.getDetachedMarker("TOOLTIP"))), is(FilterReply.ACCEPT));
+	}
+
+	@Test
+	public void eventsFromOtherThreadsAreDenied() throws InterruptedException {
+		final MarkerFilter filter = newFilter("STORYBOARD");
+		final AtomicReference<FilterReply> reply = new AtomicReference<FilterReply>();
+		final LoggingEvent event = event(MarkerFactory.getDetachedMarker("STORYBOARD"));
+
+		filter.setThreadId(Thread.currentThread().getId());
+
+		Thread thread = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				reply.set(filter.decide(event));
+			}
+		});
+		thread.start();
+		thread.join();
+
+		assertThat(reply.get(), is(FilterReply.DENY));
+		assertThat(filter.decide(event), is(FilterReply.ACCEPT));
+	}
+
+	private MarkerFilter newFilter(String... markers) {
+		MarkerFilter filter = new MarkerFilter();
+
+		filter.setMarkers(markers);
+		filter.setOnMatch(FilterReply.ACCEPT);
+		filter.setOnMismatch(FilterReply.DENY);
+		filter.start();
+
+		return filter;
+	}
+
+	private LoggingEvent event(Marker marker) {
+		LoggingEvent event = new LoggingEvent(MarkerFilterTest.class.getName(), logger, Level.INFO, "message", null, null);
+		event.setMarker(marker);
+
+		return event;
+	}
+}
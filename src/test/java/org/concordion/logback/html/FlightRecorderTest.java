@@ -0,0 +1,50 @@
+package org.concordion.logback.html;
+
+import static org.hamcrest.CoreMatchers.*;
+import static org.junit.Assert.assertThat;
+
+import org.junit.Test;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.LoggerContext;
+import ch.qos.logback.classic.spi.LoggingEvent;
+
+public class FlightRecorderTest {
+	private final Logger logger = new LoggerContext().getLogger(FlightRecorderTest.class);
+
+	@Test
+	public void keepsMostRecentEventsInOrder() {
+		FlightRecorder recorder = new FlightRecorder(2);
+
+		recorder.record(event("one"), false);
+		recorder.record(event("two"), false);
+		recorder.record(event("three"), false);
+
+		assertThat(recorder.size(), is(2));
+		assertThat(recorder.getDiscarded(), is(1L));
+		assertThat(recorder.get(0).getMessage(), is("two"));
+		assertThat(recorder.get(1).getMessage(), is("three"));
+
+		recorder.clear();
+
+		assertThat(recorder.isEmpty(), is(true));
+		assertThat(recorder.getDiscarded(), is(0L));
+	}
+
+	@Test
+	public void callerDataIsOnlyCapturedWhenRequested() {
+		FlightRecorder recorder = new FlightRecorder(2);
+		LoggingEvent event = event("message");
+
+		recorder.record(event, false);
+		recorder.record(event, true);
+
+		assertThat(recorder.get(0).hasCallerData(), is(false));
+		assertThat(recorder.get(1).hasCallerData(), is(true));
+	}
+
+	private LoggingEvent event(String message) {
+		return new LoggingEvent(FlightRecorderTest.class.getName(), logger, Level.DEBUG, message, null, null);
+	}
+}
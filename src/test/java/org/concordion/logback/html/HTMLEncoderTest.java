@@ -0,0 +1,89 @@
+package org.concordion.logback.html;
+
+import static org.hamcrest.CoreMatchers.*;
+import static org.junit.Assert.assertThat;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.LoggerContext;
+import ch.qos.logback.classic.spi.LoggingEvent;
+
+public class HTMLEncoderTest {
+	private final LoggerContext context = new LoggerContext();
+	private final Logger logger = context.getLogger(HTMLEncoderTest.class);
+	private final HTMLEncoder encoder = new HTMLEncoder();
+
+	@Before
+	public void start() {
+		HTMLLayout layout = new HTMLLayout();
+		layout.setContext(context);
+		layout.setPattern("%message");
+		layout.start();
+
+		encoder.setContext(context);
+		encoder.setLayout(layout);
+		encoder.setCharset(StandardCharsets.UTF_8);
+		encoder.start();
+	}
+
+	@Test
+	public void bufferHoldsSameBytesAsEncode() {
+		String message = "caf\u00e9 \u20ac \ud83d\ude00";
+		LoggingEvent event = event(message);
+
+		byte[] encoded = encoder.encode(event);
+		ByteBuffer buffer = encoder.encodeToBuffer(event);
+		byte[] buffered = Arrays.copyOfRange(buffer.array(), buffer.arrayOffset() + buffer.position(), buffer.arrayOffset() + buffer.limit());
+
+		// Rows alternate in style so the output isn't identical, but the bytes must be equivalent
+		assertThat(buffered.length, is(encoded.length));
+		assertThat(new String(encoded, StandardCharsets.UTF_8), containsString(message));
+		assertThat(new String(buffered, StandardCharsets.UTF_8), containsString(message));
+	}
+
+	@Test
+	public void bufferIsReusedAndShrunkAfterLargeEvent() {
+		ByteBuffer first = encoder.encodeToBuffer(event("small"));
+
+		assertThat(encoder.encodeToBuffer(event("small")), is(sameInstance(first)));
+
+		char[] large = new char[512 * 1024];
+		Arrays.fill(large, 'x');
+		ByteBuffer grown = encoder.encodeToBuffer(event(new String(large)));
+
+		assertThat(grown.remaining() > large.length, is(true));
+		assertThat(encoder.encodeToBuffer(event("small")).capacity() < grown.capacity(), is(true));
+	}
+
+	@Test
+	public void bufferIsSharedByThreadsAndReleasedOnStop() throws InterruptedException {
+		final ByteBuffer first = encoder.encodeToBuffer(event("small"));
+		final ByteBuffer[] other = new ByteBuffer[1];
+
+		Thread thread = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				other[0] = encoder.encodeToBuffer(event("small"));
+			}
+		});
+		thread.start();
+		thread.join();
+
+		assertThat(other[0], is(sameInstance(first)));
+
+		encoder.stop();
+
+		assertThat(encoder.encodeToBuffer(event("small")), is(not(sameInstance(first))));
+	}
+
+	private LoggingEvent event(String message) {
+		return new LoggingEvent(HTMLEncoderTest.class.getName(), logger, Level.INFO, message, null, null);
+	}
+}
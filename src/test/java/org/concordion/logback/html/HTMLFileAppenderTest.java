@@ -0,0 +1,116 @@
+package org.concordion.logback.html;
+
+import static org.hamcrest.CoreMatchers.*;
+import static org.junit.Assert.assertThat;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.LoggerContext;
+import ch.qos.logback.classic.spi.LoggingEvent;
+
+public class HTMLFileAppenderTest {
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private final LoggerContext context = new LoggerContext();
+	private final Logger logger = context.getLogger(HTMLFileAppenderTest.class);
+
+	@Test
+	public void logIsSplitIntoNumberedParts() throws IOException {
+		File logFile = new File(folder.getRoot(), "testLog.html");
+		HTMLFileAppender appender = newAppender(logFile, 2);
+
+		for (int i = 1; i <= 5; i++) {
+			appender.doAppend(event(Level.INFO, "row " + i));
+		}
+		appender.stop();
+
+		File part2 = new File(folder.getRoot(), "testLog-part2.html");
+		File part3 = new File(folder.getRoot(), "testLog-part3.html");
+
+		assertThat(read(logFile), containsString("row 2"));
+		assertThat(read(logFile), not(containsString("row 3")));
+		assertThat(read(part2), containsString("row 4"));
+		assertThat(read(part3), containsString("row 5"));
+		assertThat(new File(folder.getRoot(), "testLog-part4.html").exists(), is(false));
+	}
+
+	@Test
+	public void indexListsRowRangesAndErrorsOfEachPart() throws IOException {
+		File logFile = new File(folder.getRoot(), "testLog.html");
+		HTMLFileAppender appender = newAppender(logFile, 2);
+
+		appender.doAppend(event(Level.INFO, "row 1"));
+		appender.doAppend(event(Level.INFO, "row 2"));
+		appender.doAppend(event(Level.ERROR, "row 3"));
+		appender.doAppend(event(Level.ERROR, "row 4"));
+		appender.doAppend(event(Level.INFO, "row 5"));
+		appender.stop();
+
+		File indexFile = HTMLFileAppender.getIndexFile(logFile);
+		assertThat(indexFile.getName(), is("testLog-index.html"));
+
+		String index = read(indexFile);
+
+		assertThat(index, containsString("<td><a href=\"testLog.html\">Part 1</a></td><td>1 - 2</td>"));
+		assertThat(index, containsString("<td><a href=\"testLog-part2.html\">Part 2</a></td><td>3 - 4</td>"));
+		assertThat(index, containsString("<td><a href=\"testLog-part3.html\">Part 3</a></td><td>5 - 5</td>"));
+		assertThat(index, containsString("<td class=\"errors\">2</td>"));
+		assertThat(index.split("<td>0</td>").length - 1, is(2));
+	}
+
+	@Test
+	public void indexIsOnlyWrittenWhenLogIsSplit() {
+		File logFile = new File(folder.getRoot(), "testLog.html");
+		HTMLFileAppender appender = newAppender(logFile, 10);
+
+		appender.doAppend(event(Level.INFO, "row 1"));
+		appender.doAppend(event(Level.ERROR, "row 2"));
+		appender.stop();
+
+		assertThat(logFile.exists(), is(true));
+		assertThat(HTMLFileAppender.getIndexFile(logFile).exists(), is(false));
+	}
+
+	private HTMLFileAppender newAppender(File logFile, long maxRowsPerFile) {
+		HTMLLayout layout = new HTMLLayout();
+		layout.setContext(context);
+		layout.setPattern("%level%message");
+		layout.start();
+
+		HTMLEncoder encoder = new HTMLEncoder();
+		encoder.setContext(context);
+		encoder.setLayout(layout);
+		encoder.setCharset(StandardCharsets.UTF_8);
+		encoder.start();
+
+		HTMLFileAppender appender = new HTMLFileAppender();
+		appender.setContext(context);
+		appender.setFile(logFile.getPath());
+		appender.setAppend(false);
+		appender.setMaxRowsPerFile(maxRowsPerFile);
+		appender.setEncoder(encoder);
+		appender.start();
+
+		assertThat(appender.isStarted(), is(true));
+
+		return appender;
+	}
+
+	private LoggingEvent event(Level level, String message) {
+		return new LoggingEvent(HTMLFileAppenderTest.class.getName(), logger, level, message, null, null);
+	}
+
+	private String read(File file) throws IOException {
+		return FileUtils.readFileToString(file, StandardCharsets.UTF_8);
+	}
+}
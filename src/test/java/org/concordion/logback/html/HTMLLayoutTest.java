@@ -0,0 +1,57 @@
+package org.concordion.logback.html;
+
+import static org.hamcrest.CoreMatchers.*;
+import static org.junit.Assert.assertThat;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.LoggerContext;
+import ch.qos.logback.classic.spi.LoggingEvent;
+
+public class HTMLLayoutTest {
+	private final LoggerContext context = new LoggerContext();
+	private final Logger logger = context.getLogger(HTMLLayoutTest.class);
+	private final HTMLLayout layout = new HTMLLayout();
+
+	@Before
+	public void start() {
+		layout.setContext(context);
+		layout.setPattern("%level%message%logger");
+		layout.start();
+	}
+
+	@Test
+	public void columnsFollowPattern() {
+		String header = layout.getPresentationHeader();
+		String row = layout.doLayout(event(Level.WARN, "hello"));
+
+		assertThat(header, containsString("<th class=\"Level\">Level</th>"));
+		assertThat(header, containsString("<th class=\"Message\">Message</th>"));
+		assertThat(header, containsString("<th class=\"Logger\">Logger</th>"));
+
+		assertThat(row, containsString("<td class=\"Level warn\">WARN</td>"));
+		assertThat(row, containsString("<td class=\"Message\">hello</td>"));
+		assertThat(row, containsString("<td class=\"Logger\">" + HTMLLayoutTest.class.getName() + "</td>"));
+		assertThat(row.indexOf("Level warn") < row.indexOf("hello"), is(true));
+		assertThat(row.indexOf("hello") < row.indexOf("class=\"Logger\""), is(true));
+	}
+
+	@Test
+	public void columnsAreRebuiltWhenPatternChangedAfterStart() {
+		layout.setPattern("%message");
+
+		String row = layout.doLayout(event(Level.INFO, "hello"));
+
+		assertThat(layout.isStarted(), is(true));
+		assertThat(row, containsString("<td class=\"Message\">hello</td>"));
+		assertThat(row, not(containsString("class=\"Level")));
+		assertThat(layout.getPresentationHeader(), not(containsString("<th class=\"Logger\">")));
+	}
+
+	private LoggingEvent event(Level level, String message) {
+		return new LoggingEvent(HTMLLayoutTest.class.getName(), logger, level, message, null, null);
+	}
+}
@@ -0,0 +1,99 @@
+package org.concordion.logback.html;
+
+import static org.hamcrest.CoreMatchers.*;
+import static org.junit.Assert.assertThat;
+
+import org.junit.Test;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.LoggerContext;
+import ch.qos.logback.classic.spi.LoggingEvent;
+
+public class HTMLThrowableRendererTest {
+	private final Logger logger = new LoggerContext().getLogger(HTMLThrowableRendererTest.class);
+
+	@Test
+	public void repeatedStackRefersToFirstEntry() {
+		HTMLThrowableRenderer renderer = new HTMLThrowableRenderer();
+		String[] html = new String[3];
+
+		for (int i = 0; i < html.length; i++) {
+			renderer.setEntryNumber(i + 1);
+			html[i] = render(renderer, new IllegalStateException("attempt " + i, new RuntimeException("cause")));
+		}
+
+		assertThat(html[0], containsString("stackTraceEntry"));
+		assertThat(html[1], not(containsString("stackTraceEntry")));
+		assertThat(html[1], containsString("attempt 1"));
+		assertThat(html[1], containsString("Same stack as #1 (occurrence 2)"));
+		assertThat(html[2], containsString("Same stack as #1 (occurrence 3)"));
+	}
+
+	@Test
+	public void differentStacksAreRenderedInFull() {
+		HTMLThrowableRenderer renderer = new HTMLThrowableRenderer();
+
+		render(renderer, new IllegalStateException("first"));
+		String html = render(renderer, new IllegalArgumentException("second"));
+
+		assertThat(html, containsString("stackTraceEntry"));
+		assertThat(html, not(containsString("Same stack")));
+	}
+
+	@Test
+	public void resetForgetsRenderedStacks() {
+		HTMLThrowableRenderer renderer = new HTMLThrowableRenderer();
+		String html = null;
+
+		for (int i = 0; i < 2; i++) {
+			renderer.reset();
+			html = render(renderer, new IllegalStateException("failed"));
+		}
+
+		assertThat(html, containsString("stackTraceEntry"));
+	}
+
+	@Test
+	public void lazyFramesAreWrittenAsText() {
+		HTMLThrowableRenderer renderer = new HTMLThrowableRenderer();
+		renderer.setLazy(true);
+
+		String html = render(renderer, new IllegalStateException("failed"));
+
+		assertThat(html, not(containsString("stackTraceEntry")));
+		assertThat(html, containsString("<script id=\"stackTraceData1\" type=\"text/plain\">"));
+		assertThat(html, containsString("at " + HTMLThrowableRendererTest.class.getName() + ".lazyFramesAreWrittenAsText("));
+	}
+
+	@Test
+	public void frameworkFramesAreFolded() {
+		HTMLThrowableRenderer renderer = new HTMLThrowableRenderer();
+		renderer.setFoldedPackages(PackagePrefixTrie.compile("org.junit.*, sun.reflect.*"));
+
+		Exception exception = new IllegalStateException("failed");
+		exception.setStackTrace(new StackTraceElement[] {
+				new StackTraceElement("com.example.Page", "click", "Page.java", 10),
+				new StackTraceElement("sun.reflect.NativeMethodAccessorImpl", "invoke", null, -1),
+				new StackTraceElement("org.junit.runners.ParentRunner", "run", "ParentRunner.java", 20),
+				new StackTraceElement("org.junit.runner.JUnitCore", "run", "JUnitCore.java", 30),
+				new StackTraceElement("com.example.Main", "main", "Main.java", 5),
+				new StackTraceElement("org.junit.Assert", "fail", "Assert.java", 40) });
+
+		String html = render(renderer, exception);
+
+		assertThat(html, containsString("com.example.Page.click"));
+		assertThat(html, containsString("... 3 framework frames"));
+		assertThat(html, containsString("com.example.Main.main"));
+		assertThat(html, containsString("org.junit.Assert.fail"));
+		assertThat(html, not(containsString("ParentRunner")));
+	}
+
+	private String render(HTMLThrowableRenderer renderer, Throwable throwable) {
+		StringBuilder buf = new StringBuilder();
+
+		renderer.render(buf, new LoggingEvent(HTMLThrowableRendererTest.class.getName(), logger, Level.ERROR, "message", throwable, null));
+
+		return buf.toString();
+	}
+}
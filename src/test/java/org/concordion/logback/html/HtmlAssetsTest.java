@@ -0,0 +1,64 @@
+package org.concordion.logback.html;
+
+import static org.hamcrest.CoreMatchers.*;
+import static org.junit.Assert.assertThat;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class HtmlAssetsTest {
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void relativePathClimbsOutOfNestedFolders() {
+		assertThat(HtmlAssets.getRelativePathToBase("/out/", "/out/spec/nested/ExampleLog.html"), is("../../"));
+		assertThat(HtmlAssets.getRelativePathToBase("C:/out/", "C:\\out\\spec\\ExampleLog.html"), is("../"));
+	}
+
+	@Test
+	public void relativePathIsEmptyInBaseFolder() {
+		assertThat(HtmlAssets.getRelativePathToBase("/out/", "/out/ExampleLog.html"), is(""));
+		assertThat(HtmlAssets.getRelativePathToBase("/out/", "/out/"), is(""));
+	}
+
+	@Test
+	public void relativePathIsNullOutsideBaseFolder() {
+		assertThat(HtmlAssets.getRelativePathToBase("/out/", "/other/ExampleLog.html"), is(nullValue()));
+		assertThat(HtmlAssets.getRelativePathToBase("/out/", null), is(nullValue()));
+	}
+
+	@Test
+	public void sharedAssetsAreWrittenWithoutTags() throws IOException {
+		HtmlAssets.writeSharedAssets(folder.getRoot().getPath());
+
+		String stylesheet = read(HtmlAssets.STYLESHEET);
+		String script = read(HtmlAssets.SCRIPT);
+
+		assertThat(stylesheet.isEmpty(), is(false));
+		assertThat(stylesheet, not(containsString("<style")));
+		assertThat(script.isEmpty(), is(false));
+		assertThat(script, not(containsString("<script")));
+	}
+
+	@Test
+	public void sharedAssetsAreOnlyWrittenOnce() throws IOException {
+		String path = folder.getRoot().getPath();
+
+		HtmlAssets.writeSharedAssets(path);
+		FileUtils.writeStringToFile(new File(folder.getRoot(), HtmlAssets.STYLESHEET), "changed", StandardCharsets.UTF_8);
+		HtmlAssets.writeSharedAssets(path);
+
+		assertThat(read(HtmlAssets.STYLESHEET), is("changed"));
+	}
+
+	private String read(String filename) throws IOException {
+		return FileUtils.readFileToString(new File(folder.getRoot(), filename), StandardCharsets.UTF_8);
+	}
+}
@@ -0,0 +1,37 @@
+package org.concordion.logback.html;
+
+import static org.hamcrest.CoreMatchers.*;
+import static org.junit.Assert.assertThat;
+
+import org.junit.Test;
+
+public class PackagePrefixTrieTest {
+
+	@Test
+	public void matchesClassesWithinPackages() {
+		PackagePrefixTrie trie = PackagePrefixTrie.compile("org.junit.*, sun.reflect, java.lang.reflect.Method");
+
+		assertThat(trie.matches("org.junit.Assert"), is(true));
+		assertThat(trie.matches("org.junit.runners.ParentRunner"), is(true));
+		assertThat(trie.matches("sun.reflect.NativeMethodAccessorImpl"), is(true));
+		assertThat(trie.matches("java.lang.reflect.Method"), is(true));
+		assertThat(trie.matches("java.lang.reflect.Method$1"), is(true));
+	}
+
+	@Test
+	public void onlyMatchesWholeNames() {
+		PackagePrefixTrie trie = PackagePrefixTrie.compile("org.junit");
+
+		assertThat(trie.matches("org.junitx.Assert"), is(false));
+		assertThat(trie.matches("org.jun"), is(false));
+		assertThat(trie.matches("org.Assert"), is(false));
+	}
+
+	@Test
+	public void emptyListMatchesNothing() {
+		PackagePrefixTrie trie = PackagePrefixTrie.compile(" , ");
+
+		assertThat(trie.isEmpty(), is(true));
+		assertThat(trie.matches("org.junit.Assert"), is(false));
+	}
+}
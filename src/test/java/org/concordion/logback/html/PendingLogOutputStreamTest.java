@@ -0,0 +1,43 @@
+package org.concordion.logback.html;
+
+import static org.hamcrest.CoreMatchers.*;
+import static org.junit.Assert.assertThat;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class PendingLogOutputStreamTest {
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void contentIsDiscardedIfNotCommitted() throws IOException {
+		File logFile = new File(folder.getRoot(), "discarded.html");
+		PendingLogOutputStream out = new PendingLogOutputStream(logFile, false, 4);
+
+		out.write("more than the threshold".getBytes(StandardCharsets.UTF_8));
+		out.close();
+
+		assertThat(logFile.exists(), is(false));
+	}
+
+	@Test
+	public void heldContentIsWrittenOnCommit() throws IOException {
+		File logFile = new File(folder.getRoot(), "sub/committed.html");
+		PendingLogOutputStream out = new PendingLogOutputStream(logFile, false, 4);
+
+		out.write("held ".getBytes(StandardCharsets.UTF_8));
+		out.commit();
+		out.write("direct".getBytes(StandardCharsets.UTF_8));
+		out.close();
+
+		assertThat(out.isCommitted(), is(true));
+		assertThat(FileUtils.readFileToString(logFile, StandardCharsets.UTF_8), is("held direct"));
+	}
+}
@@ -0,0 +1,138 @@
+package org.concordion.logback.html;
+
+import static org.hamcrest.CoreMatchers.*;
+import static org.junit.Assert.assertThat;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+import ch.qos.logback.core.helpers.Transform;
+
+public class TransformTextTest {
+	private static final String SPECIAL_CHARACTERS = "<>&\"'\t\r\n\u0000\u0001\u000b\u001f";
+	private static final String[] SAMPLES = {
+			"",
+			"plain text",
+			"<b>bold</b> & \"quoted\" 'single'",
+			"tab\tseparated\tvalues",
+			"line one\nline two\r\nline three\r",
+			"\t\n<>&\"'",
+			"control \u0000 \u0001 \u0008 \u000b \u000c \u000e \u001f characters",
+			"unicode \u00e9\u00e8 \u20ac \uD83D\uDE00 text",
+			"SELECT *\n\tFROM table\n\tWHERE a < 1\n\tAND b > 2\n\tAND c = 'x'",
+			"<?xml version=\"1.0\"?>\n<root>\n\t<child attr=\"a&amp;b\"/>\n</root>"
+	};
+
+	@Test
+	public void escapeHtmlMatchesEscapeTagsFollowedByEscapeText() {
+		for (String sample : SAMPLES) {
+			assertThat(sample, escapeHtml(sample), is(legacyEscapeHtml(sample)));
+		}
+	}
+
+	@Test
+	public void escapeTagsMatchesLogbackTransform() {
+		for (String sample : SAMPLES) {
+			assertThat(sample, escapeTags(sample), is(String.valueOf(Transform.escapeTags(sample))));
+		}
+	}
+
+	@Test
+	public void escapeTextMatchesReplacementOfTabsAndNewLines() {
+		for (String sample : SAMPLES) {
+			assertThat(sample, TransformText.escapeText(sample), is(legacyEscapeText(sample)));
+			assertThat(sample, TransformText.escapeText(new StringBuffer(sample)), is(legacyEscapeText(sample)));
+		}
+	}
+
+	@Test
+	public void randomTextMatchesLegacyEscaping() {
+		Random random = new Random(20181018);
+		String alphabet = SPECIAL_CHARACTERS + "abc XYZ 123 \u00e9\u20ac";
+
+		for (int i = 0; i < 1000; i++) {
+			StringBuilder sb = new StringBuilder();
+			int length = random.nextInt(200);
+
+			for (int j = 0; j < length; j++) {
+				sb.append(alphabet.charAt(random.nextInt(alphabet.length())));
+			}
+
+			String sample = sb.toString();
+
+			assertThat(sample, escapeHtml(sample), is(legacyEscapeHtml(sample)));
+			assertThat(sample, escapeTags(sample), is(String.valueOf(Transform.escapeTags(sample))));
+		}
+	}
+
+	@Test
+	public void nullIsAppendedAsNull() {
+		assertThat(escapeHtml(null), is(legacyEscapeHtml(null)));
+		assertThat(escapeTags(null), is("null"));
+		assertThat(TransformText.escapeText((String) null), is(nullValue()));
+	}
+
+	@Test
+	public void appendsToExistingContent() {
+		StringBuilder buf = new StringBuilder("<td>");
+
+		TransformText.escapeHtml("a < b\n", buf);
+		buf.append("</td>");
+
+		assertThat(buf.toString(), is("<td>a &lt; b<br /></td>"));
+	}
+
+	@Test
+	public void largeMultiLineTextIsEscaped() {
+		StringBuilder sb = new StringBuilder();
+		for (int i = 0; i < 20000; i++) {
+			sb.append("row\t").append(i).append(" <value>\n");
+		}
+		String sample = sb.toString();
+
+		assertThat(escapeHtml(sample), is(legacyEscapeHtml(sample)));
+	}
+
+	private String escapeHtml(String input) {
+		StringBuilder buf = new StringBuilder();
+		TransformText.escapeHtml(input, buf);
+		return buf.toString();
+	}
+
+	private String escapeTags(String input) {
+		StringBuilder buf = new StringBuilder();
+		TransformText.escapeTags(input, buf);
+		return buf.toString();
+	}
+
+	/**
+	 * The escaping HTMLLayout used to perform: Transform.escapeTags and then replacing tabs and new lines.
+	 */
+	private String legacyEscapeHtml(String input) {
+		StringBuilder buf = new StringBuilder();
+		buf.append(legacyEscapeText(Transform.escapeTags(input)));
+		return buf.toString();
+	}
+
+	private String legacyEscapeText(String input) {
+		if (input == null || input.length() == 0) {
+			return input;
+		}
+
+		StringBuffer buf = new StringBuffer(input);
+		for (int i = 0; i < buf.length(); i++) {
+			char ch = buf.charAt(i);
+			switch (ch) {
+			case '\t':
+				buf.replace(i, i + 1, "&nbsp;&nbsp;&nbsp;&nbsp;");
+				break;
+			case '\n':
+				buf.replace(i, i + 1, "<br />");
+				break;
+			}
+		}
+
+		return buf.toString();
+	}
+}
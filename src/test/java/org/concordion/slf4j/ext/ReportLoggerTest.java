@@ -0,0 +1,152 @@
+package org.concordion.slf4j.ext;
+
+import static org.hamcrest.CoreMatchers.*;
+import static org.junit.Assert.assertThat;
+
+import java.io.File;
+import java.util.concurrent.Callable;
+
+import org.concordion.slf4j.BaseLoggingAdaptor;
+import org.concordion.slf4j.ILoggingAdaptor;
+
+import org.junit.Test;
+import org.slf4j.LoggerFactory;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+
+public class ReportLoggerTest {
+
+	@Test
+	public void disabledLevelReturnsSharedDisabledLogger() {
+		Logger logback = (Logger) LoggerFactory.getLogger(ReportLoggerTest.class.getName() + ".disabled");
+		logback.setLevel(Level.INFO);
+
+		ReportLogger logger = ReportLoggerFactory.getReportLogger(logback.getName());
+
+		assertThat(logger.atTrace(), is(sameInstance(FluentLogger.DISABLED)));
+		assertThat(logger.atDebug(), is(sameInstance(FluentLogger.DISABLED)));
+		assertThat(logger.atInfo(), is(not(sameInstance(FluentLogger.DISABLED))));
+
+		// Nothing is prepared for a disabled entry, the screenshot would otherwise fail as no screenshot taker is registered
+		logger.atTrace().message("not logged").data("{}", "data").screenshot().log();
+	}
+
+	@Test
+	public void lazyDataIsNotProducedWhenLevelDisabled() {
+		Logger logback = (Logger) LoggerFactory.getLogger(ReportLoggerTest.class.getName() + ".lazy");
+		logback.setLevel(Level.INFO);
+
+		ReportLogger logger = ReportLoggerFactory.getReportLogger(logback.getName());
+		final int[] calls = { 0 };
+
+		logger.with().message("not logged").data(new Callable<String>() {
+			@Override
+			public String call() {
+				calls[0]++;
+				return "data";
+			}
+		}).debug();
+
+		assertThat(calls[0], is(0));
+	}
+
+	@Test
+	public void dataDoesNotLookUpLogFileUnlessItIsWrittenToFile() {
+		final int[] calls = { 0 };
+		ILoggingAdaptor adaptor = new BaseLoggingAdaptor() {
+			@Override
+			public File getLogFile() {
+				calls[0]++;
+				return new File("");
+			}
+
+			@Override
+			public boolean logFileExists() {
+				return false;
+			}
+
+			@Override
+			public void startLogFile(String logPath) {
+			}
+
+			@Override
+			public void startSpecificationLogFile(String resourcePath) {
+			}
+
+			@Override
+			public void startExampleLogFile(String resourcePath, String exampleName) {
+			}
+
+			@Override
+			public void stopLogFile() {
+			}
+		};
+
+		FluentLogger.addLoggingAdaptor(adaptor);
+		try {
+			ReportLogger logger = ReportLoggerFactory.getReportLogger(ReportLoggerTest.class);
+
+			logger.with().message("data").data("{}", "small").debug();
+			logger.atTrace().message("disabled").data("{}", "small").log();
+		} finally {
+			FluentLogger.removeLoggingAdaptor();
+		}
+
+		assertThat(calls[0], is(0));
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void logRequiresLevel() {
+		ReportLogger logger = ReportLoggerFactory.getReportLogger(ReportLoggerTest.class);
+
+		logger.with().message("no level").log();
+	}
+
+	@Test
+	public void bufferedEntriesAreWrittenAccordingToPolicy() {
+		ReportLogger logger = ReportLoggerFactory.getReportLogger(ReportLoggerTest.class);
+
+		FluentLogger stepEntry = logger.withBuffered(BufferFlushPolicy.STEP);
+		stepEntry.message("until step").debug();
+		logger.withBuffered(BufferFlushPolicy.EXAMPLE_END).message("until example end").debug();
+		logger.withBuffered().message("until next entry").debug();
+
+		assertThat(logger.getBufferedMessage(), is(not(sameInstance(stepEntry))));
+
+		logger.with().message("next entry").debug();
+		assertThat(logger.hasBufferedMessage(), is(true));
+
+		logger.step("step");
+		assertThat(logger.hasBufferedMessage(), is(true));
+
+		logger.writeBufferedMessages(BufferFlushPolicy.EXAMPLE_END);
+		assertThat(logger.hasBufferedMessage(), is(false));
+	}
+
+	@Test
+	public void bufferedEntriesBelongToTheirThread() throws InterruptedException {
+		final ReportLogger logger = ReportLoggerFactory.getReportLogger(ReportLoggerTest.class);
+		final boolean[] otherThread = new boolean[2];
+
+		logger.withBuffered().message("buffered on main thread").debug();
+
+		Thread thread = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				otherThread[0] = logger.hasBufferedMessage();
+				logger.clearBufferedMessage();
+				logger.with().message("other thread").debug();
+				otherThread[1] = true;
+			}
+		});
+		thread.start();
+		thread.join();
+
+		assertThat(otherThread[1], is(true));
+		assertThat(otherThread[0], is(false));
+		assertThat(logger.hasBufferedMessage(), is(true));
+
+		logger.clearBufferedMessage();
+	}
+}
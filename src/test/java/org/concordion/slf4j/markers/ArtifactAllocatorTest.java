@@ -0,0 +1,56 @@
+package org.concordion.slf4j.markers;
+
+import static org.hamcrest.CoreMatchers.*;
+import static org.junit.Assert.assertThat;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.junit.Test;
+
+public class ArtifactAllocatorTest {
+
+	@Test
+	public void numbersAreAllocatedPerLogFile() {
+		ArtifactAllocator.release("first");
+		ArtifactAllocator.release("second");
+
+		assertThat(ArtifactAllocator.next("first"), is(0));
+		assertThat(ArtifactAllocator.next("first"), is(1));
+		assertThat(ArtifactAllocator.next("second"), is(0));
+
+		ArtifactAllocator.release("first");
+
+		assertThat(ArtifactAllocator.next("first"), is(0));
+	}
+
+	@Test
+	public void threadsSharingLogFileGetUniqueNumbers() throws InterruptedException {
+		final String logFile = "shared";
+		final Set<Integer> allocated = Collections.synchronizedSet(new HashSet<Integer>());
+		Thread[] threads = new Thread[4];
+
+		ArtifactAllocator.release(logFile);
+
+		for (int i = 0; i < threads.length; i++) {
+			threads[i] = new Thread(new Runnable() {
+				@Override
+				public void run() {
+					for (int j = 0; j < 250; j++) {
+						allocated.add(ArtifactAllocator.next(logFile));
+					}
+				}
+			});
+			threads[i].start();
+		}
+
+		for (Thread thread : threads) {
+			thread.join();
+		}
+
+		assertThat(allocated.size(), is(1000));
+
+		ArtifactAllocator.release(logFile);
+	}
+}
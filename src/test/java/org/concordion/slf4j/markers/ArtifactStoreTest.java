@@ -0,0 +1,110 @@
+package org.concordion.slf4j.markers;
+
+import static org.hamcrest.CoreMatchers.*;
+import static org.junit.Assert.assertThat;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class ArtifactStoreTest {
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@After
+	public void disableStore() {
+		ArtifactStore.setRoot(null);
+		ArtifactWriter.setAsynchronous(false);
+	}
+
+	@Test
+	public void identicalContentIsStoredOnce() throws IOException {
+		ArtifactStore.setRoot(folder.getRoot());
+
+		String logFile = new File(folder.getRoot(), "spec/ExampleLog.html").getPath();
+
+		String first = store(logFile, "same content");
+		String second = store(logFile, "same content");
+		String other = store(logFile, "other content");
+
+		assertThat(first, is(second));
+		assertThat(first, is(not(other)));
+		assertThat(first, startsWith("../" + ArtifactStore.FOLDER + "/"));
+		assertThat(first, endsWith(".txt"));
+
+		// Only the stored files remain, temporary files are removed
+		assertThat(new File(folder.getRoot(), ArtifactStore.FOLDER).list().length, is(2));
+	}
+
+	@Test
+	public void contentCapturedInMemoryIsStoredUnderTheSameName() throws IOException {
+		ArtifactStore.setRoot(folder.getRoot());
+
+		String logFile = new File(folder.getRoot(), "ExampleLog.html").getPath();
+		ByteArrayOutputStream content = new ByteArrayOutputStream();
+		content.write("same content".getBytes(StandardCharsets.UTF_8));
+
+		assertThat(ArtifactStore.store(logFile, "txt", content), is(store(logFile, "same content")));
+	}
+
+	@Test
+	public void contentIsWrittenAgainAfterBackgroundWriteFails() throws IOException {
+		ArtifactStore.setRoot(folder.getRoot());
+		ArtifactWriter.setAsynchronous(true);
+
+		String logFile = new File(folder.getRoot(), "ExampleLog.html").getPath();
+		File store = new File(folder.getRoot(), ArtifactStore.FOLDER);
+		final CountDownLatch release = new CountDownLatch(1);
+
+		// Hold up the writer threads so the folder can be replaced before the content is written
+		for (int i = 0; i < ArtifactWriter.THREADS; i++) {
+			ArtifactWriter.submit(logFile, new Runnable() {
+				@Override
+				public void run() {
+					try {
+						release.await(10, TimeUnit.SECONDS);
+					} catch (InterruptedException e) {
+						Thread.currentThread().interrupt();
+					}
+				}
+			});
+		}
+
+		String path = ArtifactStore.store(logFile, "txt", content("same content"));
+
+		FileUtils.deleteDirectory(store);
+		FileUtils.touch(store);
+		release.countDown();
+		ArtifactWriter.flush(logFile);
+
+		FileUtils.forceDelete(store);
+		assertThat(ArtifactStore.store(logFile, "txt", content("same content")), is(path));
+		ArtifactWriter.flush(logFile);
+
+		assertThat(FileUtils.readFileToString(new File(folder.getRoot(), path), StandardCharsets.UTF_8), is("same content"));
+	}
+
+	private ByteArrayOutputStream content(String content) throws IOException {
+		ByteArrayOutputStream stream = new ByteArrayOutputStream();
+		stream.write(content.getBytes(StandardCharsets.UTF_8));
+
+		return stream;
+	}
+
+	private String store(String logFile, String content) throws IOException {
+		ArtifactStore.Artifact artifact = ArtifactStore.create("txt");
+
+		artifact.getOutputStream().write(content.getBytes(StandardCharsets.UTF_8));
+
+		return artifact.store(logFile);
+	}
+}
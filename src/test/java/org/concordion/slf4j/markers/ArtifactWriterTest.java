@@ -0,0 +1,79 @@
+package org.concordion.slf4j.markers;
+
+import static org.hamcrest.CoreMatchers.*;
+import static org.junit.Assert.assertThat;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class ArtifactWriterTest {
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@After
+	public void writeSynchronously() {
+		ArtifactWriter.setAsynchronous(false);
+	}
+
+	@Test
+	public void flushWaitsForOutstandingWrites() throws InterruptedException {
+		final String logFile = new File(folder.getRoot(), "ExampleLog.html").getPath();
+		final CountDownLatch release = new CountDownLatch(1);
+		final AtomicBoolean written = new AtomicBoolean(false);
+		final AtomicBoolean flushed = new AtomicBoolean(false);
+
+		ArtifactWriter.submit(logFile, new Runnable() {
+			@Override
+			public void run() {
+				try {
+					release.await(10, TimeUnit.SECONDS);
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+				written.set(true);
+			}
+		});
+
+		Thread thread = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				ArtifactWriter.flush(logFile);
+				flushed.set(written.get());
+			}
+		});
+		thread.start();
+		thread.join(200);
+
+		assertThat(thread.isAlive(), is(true));
+
+		release.countDown();
+		thread.join(10000);
+
+		assertThat(flushed.get(), is(true));
+	}
+
+	@Test
+	public void asynchronousWriteIsCompleteAfterFlush() throws IOException {
+		String logFile = new File(folder.getRoot(), "ExampleLog.html").getPath();
+		File target = new File(folder.getRoot(), "attachment.txt");
+		ByteArrayOutputStream content = new ByteArrayOutputStream();
+		content.write("content".getBytes(StandardCharsets.UTF_8));
+
+		ArtifactWriter.setAsynchronous(true);
+		ArtifactWriter.write(logFile, target, content);
+		ArtifactWriter.flush(logFile);
+
+		assertThat(FileUtils.readFileToString(target, StandardCharsets.UTF_8), is("content"));
+	}
+}
@@ -0,0 +1,135 @@
+package org.concordion.slf4j.markers;
+
+import static org.hamcrest.CoreMatchers.*;
+import static org.junit.Assert.assertThat;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+
+import org.apache.commons.io.FileUtils;
+import org.concordion.ext.AttachmentWriter;
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class AttachmentMarkerTest {
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private final int previewLimit = BaseDataMarker.getPreviewLimit();
+
+	@After
+	public void restorePreviewLimit() {
+		BaseDataMarker.setPreviewLimit(previewLimit);
+	}
+
+	@Test
+	public void fileIsCopiedAndPreviewIsLimited() throws IOException {
+		BaseDataMarker.setPreviewLimit(1024);
+
+		File source = folder.newFile("large.txt");
+		StringBuilder text = new StringBuilder();
+		while (text.length() <= BaseDataMarker.getPreviewLimit()) {
+			text.append("0123456789");
+		}
+		String content = text.toString();
+		FileUtils.writeStringToFile(source, content, StandardCharsets.UTF_8);
+
+		String logFile = new File(folder.getRoot(), "TestLog.html").getPath();
+		AttachmentMarker marker = new AttachmentMarker(logFile, source, source.getName(), "text/plain");
+
+		marker.prepareData();
+
+		File copy = new File(folder.getRoot(), marker.getFile());
+		assertThat(FileUtils.readFileToString(copy, StandardCharsets.UTF_8), is(content));
+
+		String html = marker.getFormattedData();
+		assertThat(html, containsString(content.substring(0, BaseDataMarker.getPreviewLimit())));
+		assertThat(html, not(containsString(content.substring(0, BaseDataMarker.getPreviewLimit() + 1))));
+		assertThat(html, containsString("data-content=\"" + marker.getFile() + "\""));
+
+		ArtifactAllocator.release(logFile);
+	}
+
+	@Test
+	public void attachmentPreviewIsCappedByDefault() throws IOException {
+		final String content = new String(new char[AttachmentMarker.PREVIEW_LIMIT + 10]).replace('\0', 'x');
+		String logFile = new File(folder.getRoot(), "TestLog.html").getPath();
+		AttachmentMarker marker = new AttachmentMarker(logFile, "large.txt", "text/plain", new AttachmentWriter() {
+			@Override
+			public void writeTo(Writer writer) throws IOException {
+				writer.write(content);
+			}
+		});
+
+		marker.prepareData();
+
+		assertThat(marker.getFormattedData(), containsString("... (first " + AttachmentMarker.PREVIEW_LIMIT + " characters shown"));
+
+		ArtifactAllocator.release(logFile);
+	}
+
+	@Test
+	public void unlimitedPreviewIncludesFullAttachment() throws IOException {
+		BaseDataMarker.setPreviewLimit(BaseDataMarker.UNLIMITED);
+
+		final String content = new String(new char[AttachmentMarker.PREVIEW_LIMIT + 10]).replace('\0', 'x');
+		String logFile = new File(folder.getRoot(), "TestLog.html").getPath();
+		AttachmentMarker marker = new AttachmentMarker(logFile, "large.txt", "text/plain", new AttachmentWriter() {
+			@Override
+			public void writeTo(Writer writer) throws IOException {
+				writer.write(content);
+			}
+		});
+
+		marker.prepareData();
+
+		assertThat(marker.getFormattedData(), containsString(">" + content + "</xmp>"));
+
+		ArtifactAllocator.release(logFile);
+	}
+
+	@Test
+	public void previewDoesNotSplitSurrogatePair() throws IOException {
+		BaseDataMarker.setPreviewLimit(5);
+
+		String logFile = new File(folder.getRoot(), "TestLog.html").getPath();
+		AttachmentMarker marker = new AttachmentMarker(logFile, "emoji.txt", "text/plain", new AttachmentWriter() {
+			@Override
+			public void writeTo(Writer writer) throws IOException {
+				writer.write("abcd\ud83d\ude00efg");
+			}
+		});
+
+		marker.prepareData();
+
+		String html = marker.getFormattedData();
+		assertThat(html, containsString(">abcd" + System.lineSeparator() + "... (first 4 characters shown"));
+
+		ArtifactAllocator.release(logFile);
+	}
+
+	@Test
+	public void writerCallbackWritesStraightToFile() throws IOException {
+		String logFile = new File(folder.getRoot(), "TestLog.html").getPath();
+		AttachmentMarker marker = new AttachmentMarker(logFile, "callback.txt", "text/plain", new AttachmentWriter() {
+			@Override
+			public void writeTo(Writer writer) throws IOException {
+				writer.write("caf\u00e9 ");
+				writer.write("<content>");
+			}
+		});
+
+		marker.prepareData();
+
+		File file = new File(folder.getRoot(), marker.getFile());
+		assertThat(file.getName(), is("TestLog0-callback.txt"));
+		assertThat(FileUtils.readFileToString(file, StandardCharsets.UTF_8), is("caf\u00e9 <content>"));
+		assertThat(marker.getFormattedData(), containsString("<xmp class=\"fadeout\">caf\u00e9 <content></xmp>"));
+
+		ArtifactAllocator.release(logFile);
+	}
+}
@@ -0,0 +1,163 @@
+package org.concordion.slf4j.markers;
+
+import static org.hamcrest.CoreMatchers.*;
+import static org.junit.Assert.assertThat;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.Callable;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class DataMarkerTest {
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private final int previewLimit = BaseDataMarker.getPreviewLimit();
+
+	@After
+	public void restorePreviewLimit() {
+		BaseDataMarker.setPreviewLimit(previewLimit);
+	}
+
+	@Test
+	public void lazyDataIsOnlyProducedOnce() {
+		CountingSource source = new CountingSource("<data>");
+		DataMarker marker = new DataMarker(source);
+
+		assertThat(source.calls, is(0));
+		assertThat(marker.hasData(), is(true));
+		assertThat(marker.getFormattedData(), is("<xmp>&lt;data&gt;</xmp>"));
+		assertThat(source.calls, is(1));
+	}
+
+	@Test
+	public void lazyHtmlMessageIsOnlyProducedOnce() {
+		CountingSource source = new CountingSource("<b>bold</b>");
+		HtmlMessageMarker marker = new HtmlMessageMarker(source);
+
+		assertThat(source.calls, is(0));
+		assertThat(marker.getFormattedMessage(), is("<b>bold</b>"));
+		assertThat(marker.getFormat(), is("<b>bold</b>"));
+		assertThat(source.calls, is(1));
+	}
+
+	@Test
+	public void failureToProduceDataIsReported() {
+		HtmlMarker marker = new HtmlMarker(new Callable<String>() {
+			@Override
+			public String call() throws Exception {
+				throw new IllegalStateException("no connection");
+			}
+		});
+
+		assertThat(marker.getFormattedData(), is("Unable to get data: no connection"));
+	}
+
+	@Test
+	public void smallDataIsIncludedInLog() {
+		String logFile = new File(folder.getRoot(), "TestLog.html").getPath();
+
+		assertThat(new DataMarker(logFile, "small").getFormattedData(), is("<xmp>small</xmp>"));
+		assertThat(folder.getRoot().list().length, is(0));
+	}
+
+	@Test
+	public void largeDataIsWrittenToFile() throws IOException {
+		BaseDataMarker.setPreviewLimit(1024);
+
+		StringBuilder text = new StringBuilder();
+		while (text.length() <= BaseDataMarker.getPreviewLimit()) {
+			text.append("0123456789");
+		}
+		String content = text.toString();
+
+		String logFile = new File(folder.getRoot(), "TestLog.html").getPath();
+		DataMarker marker = new DataMarker(logFile, content);
+
+		String html = marker.getFormattedData();
+
+		File file = new File(folder.getRoot(), "TestLog0-data.txt");
+		assertThat(FileUtils.readFileToString(file, StandardCharsets.UTF_8), is(content));
+		assertThat(html, containsString("data-content=\"TestLog0-data.txt\""));
+		assertThat(html, containsString(content.substring(0, BaseDataMarker.getPreviewLimit())));
+		assertThat(html, not(containsString(content.substring(0, BaseDataMarker.getPreviewLimit() + 1))));
+
+		// Formatting the data again refers to the same file
+		assertThat(marker.getFormattedData(), is(html));
+
+		ArtifactAllocator.release(logFile);
+	}
+
+	@Test
+	public void largeDataIsIncludedInLogWhenNoLimitIsSet() {
+		String logFile = new File(folder.getRoot(), "TestLog.html").getPath();
+		String content = new String(new char[20000]).replace('\0', 'x');
+
+		assertThat(new DataMarker(logFile, content).getFormattedData(), is("<xmp>" + content + "</xmp>"));
+		assertThat(folder.getRoot().list().length, is(0));
+	}
+
+	@Test
+	public void previewDoesNotSplitSurrogatePair() {
+		BaseDataMarker.setPreviewLimit(5);
+
+		String logFile = new File(folder.getRoot(), "TestLog.html").getPath();
+		String html = new DataMarker(logFile, "abcd\ud83d\ude00efg").getFormattedData();
+
+		assertThat(html, containsString(">abcd" + System.lineSeparator() + "... (first 4 characters shown"));
+
+		ArtifactAllocator.release(logFile);
+	}
+
+	@Test
+	public void logFileIsOnlyLookedUpWhenDataIsWrittenToFile() throws IOException {
+		final String logFile = new File(folder.getRoot(), "TestLog.html").getPath();
+		CountingSource logFileSource = new CountingSource(logFile);
+		String content = new String(new char[100]).replace('\0', 'x');
+
+		new DataMarker(content).withLogFile(logFileSource).getFormattedData();
+		assertThat(logFileSource.calls, is(0));
+
+		BaseDataMarker.setPreviewLimit(200);
+		new DataMarker(content).withLogFile(logFileSource).getFormattedData();
+		assertThat(logFileSource.calls, is(0));
+
+		BaseDataMarker.setPreviewLimit(50);
+		DataMarker marker = new DataMarker(content).withLogFile(logFileSource);
+		String html = marker.getFormattedData();
+
+		assertThat(marker.getFormattedData(), is(html));
+		assertThat(logFileSource.calls, is(1));
+		assertThat(html, containsString("data-content=\"TestLog0-data.txt\""));
+
+		ArtifactAllocator.release(logFile);
+	}
+
+	@Test
+	public void dataIsIncludedInLogWhenThereIsNoLogFile() {
+		BaseDataMarker.setPreviewLimit(5);
+
+		assertThat(new DataMarker("0123456789").withLogFile(new CountingSource(null)).getFormattedData(), is("<xmp>0123456789</xmp>"));
+	}
+
+	private static class CountingSource implements Callable<String> {
+		private final String value;
+		private int calls = 0;
+
+		CountingSource(String value) {
+			this.value = value;
+		}
+
+		@Override
+		public String call() {
+			calls++;
+			return value;
+		}
+	}
+}
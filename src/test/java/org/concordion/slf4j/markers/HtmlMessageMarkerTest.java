@@ -0,0 +1,72 @@
+package org.concordion.slf4j.markers;
+
+import static org.hamcrest.CoreMatchers.*;
+import static org.junit.Assert.assertThat;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+public class HtmlMessageMarkerTest {
+	private static final int THREADS = 8;
+
+	@Test
+	public void lazyMessageIsProducedOnceForConcurrentReaders() throws Exception {
+		final AtomicInteger calls = new AtomicInteger();
+		final CountDownLatch start = new CountDownLatch(1);
+		final HtmlMessageMarker marker = new HtmlMessageMarker(new Callable<String>() {
+			@Override
+			public String call() throws Exception {
+				calls.incrementAndGet();
+				Thread.sleep(20);
+				return "<b>lazy</b>";
+			}
+		});
+
+		ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+		List<Future<String>> results = new ArrayList<>();
+
+		try {
+			for (int i = 0; i < THREADS; i++) {
+				results.add(executor.submit(new Callable<String>() {
+					@Override
+					public String call() throws Exception {
+						start.await();
+						return marker.getFormattedMessage();
+					}
+				}));
+			}
+
+			start.countDown();
+
+			for (Future<String> result : results) {
+				assertThat(result.get(), is("<b>lazy</b>"));
+			}
+		} finally {
+			executor.shutdown();
+		}
+
+		assertThat(calls.get(), is(1));
+		assertThat(marker.getFormat(), is("<b>lazy</b>"));
+	}
+
+	@Test
+	public void failingSourceIsReportedInMessage() {
+		HtmlMessageMarker marker = new HtmlMessageMarker(new Callable<String>() {
+			@Override
+			public String call() throws Exception {
+				throw new IllegalStateException("boom");
+			}
+		});
+
+		assertThat(marker.getFormattedMessage(), is("Unable to get message: boom"));
+		assertThat(marker.getFormattedMessage(), is("Unable to get message: boom"));
+	}
+}
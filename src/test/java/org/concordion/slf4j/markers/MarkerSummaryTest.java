@@ -0,0 +1,63 @@
+package org.concordion.slf4j.markers;
+
+import static org.hamcrest.CoreMatchers.*;
+import static org.junit.Assert.assertThat;
+
+import org.junit.Test;
+import org.slf4j.Marker;
+import org.slf4j.MarkerFactory;
+import org.slf4j.helpers.ConcordionMarker;
+
+public class MarkerSummaryTest {
+
+	@Test
+	public void nullMarkerHasEmptySummary() {
+		MarkerSummary summary = MarkerSummary.of(null);
+
+		assertThat(summary.isProgress(), is(false));
+		assertThat(summary.getHtmlMessage(), is(nullValue()));
+		assertThat(summary.getDataMarkers().isEmpty(), is(true));
+		assertThat(summary.contains("STEP"), is(false));
+	}
+
+	@Test
+	public void classifiesMarkersInOnePass() {
+		ConcordionMarker root = new ConcordionMarker("FLUENT_LOGGER");
+		HtmlMessageMarker htmlMessage = new HtmlMessageMarker("<b>{}</b>", "bold");
+		DataMarker data = new DataMarker("data");
+		Marker custom = MarkerFactory.getDetachedMarker("CUSTOM");
+
+		data.add(custom);
+		root.add(ReportLoggerMarkers.STEP_MARKER);
+		root.add(htmlMessage);
+		root.add(data);
+
+		MarkerSummary summary = MarkerSummary.of(root);
+
+		assertThat(summary.isStep(), is(true));
+		assertThat(summary.isProgress(), is(false));
+		assertThat(summary.has(MarkerSummary.HTML_MESSAGE | MarkerSummary.DATA), is(true));
+		assertThat(summary.has(MarkerSummary.TOOLTIP), is(false));
+		assertThat(summary.getHtmlMessage(), is(sameInstance(htmlMessage)));
+		assertThat(summary.getDataMarkers().size(), is(1));
+		assertThat(summary.getDataMarkers().get(0), is(sameInstance((Object) data)));
+		assertThat(summary.find("CUSTOM"), is(sameInstance(custom)));
+		assertThat(summary.find(ReportLoggerMarkers.DATA_MARKER_NAME), is(sameInstance((Marker) data)));
+		assertThat(summary.contains("MISSING"), is(false));
+	}
+
+	@Test
+	public void summaryIsCachedUntilMarkerAdded() {
+		ConcordionMarker root = new ConcordionMarker("FLUENT_LOGGER");
+		root.add(ReportLoggerMarkers.STEP_MARKER);
+
+		MarkerSummary summary = MarkerSummary.of(root);
+
+		assertThat(MarkerSummary.of(root), is(sameInstance(summary)));
+
+		root.add(ReportLoggerMarkers.PROGRESS_MARKER);
+
+		assertThat(MarkerSummary.of(root), is(not(sameInstance(summary))));
+		assertThat(MarkerSummary.of(root).isProgress(), is(true));
+	}
+}
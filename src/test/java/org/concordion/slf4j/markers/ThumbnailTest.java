@@ -0,0 +1,57 @@
+package org.concordion.slf4j.markers;
+
+import static org.hamcrest.CoreMatchers.*;
+import static org.junit.Assert.assertThat;
+
+import java.awt.Dimension;
+import java.awt.image.BufferedImage;
+import java.io.File;
+
+import javax.imageio.ImageIO;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class ThumbnailTest {
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void wideImagesAreScaledToDisplayWidth() {
+		Dimension imageSize = new Dimension(1400, 800);
+
+		assertThat(Thumbnail.isRequired(imageSize), is(true));
+		assertThat(Thumbnail.getDisplaySize(imageSize), is(new Dimension(350, 200)));
+	}
+
+	@Test
+	public void tallImagesAreScaledToDisplayHeight() {
+		assertThat(Thumbnail.getDisplaySize(new Dimension(400, 800)), is(new Dimension(100, 200)));
+	}
+
+	@Test
+	public void smallImagesAreUsedAsIs() {
+		assertThat(Thumbnail.isRequired(new Dimension(300, 150)), is(false));
+	}
+
+	@Test
+	public void thumbnailIsNamedAfterImage() {
+		assertThat(Thumbnail.getName("../artifacts/abc.png"), is("../artifacts/abc-thumb.png"));
+		assertThat(Thumbnail.getName("folder.name/image"), is("folder.name/image-thumb"));
+	}
+
+	@Test
+	public void thumbnailIsMovedIntoPlaceOnceWritten() throws Exception {
+		File image = folder.newFile("screen.png");
+		ImageIO.write(new BufferedImage(1400, 800, BufferedImage.TYPE_INT_RGB), "png", image);
+
+		new Thumbnail(image, null, Thumbnail.getDisplaySize(new Dimension(1400, 800)), "png").write();
+
+		BufferedImage thumbnail = ImageIO.read(new File(folder.getRoot(), "screen-thumb.png"));
+
+		assertThat(thumbnail.getWidth(), is(350));
+		assertThat(thumbnail.getHeight(), is(200));
+		assertThat(folder.getRoot().list().length, is(2));
+	}
+}
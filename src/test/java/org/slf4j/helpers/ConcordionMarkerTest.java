@@ -0,0 +1,73 @@
+package org.slf4j.helpers;
+
+import static org.hamcrest.CoreMatchers.*;
+import static org.junit.Assert.assertThat;
+
+import java.util.Iterator;
+
+import org.junit.Test;
+import org.slf4j.Marker;
+import org.slf4j.MarkerFactory;
+
+public class ConcordionMarkerTest {
+
+	@Test
+	public void referencesAreIteratedInOrder() {
+		ConcordionMarker root = new ConcordionMarker("ROOT");
+		Marker first = new ConcordionMarker("FIRST");
+		Marker second = MarkerFactory.getDetachedMarker("SECOND");
+
+		assertThat(root.hasReferences(), is(false));
+		assertThat(root.addReference(first), is(true));
+		assertThat(root.addReference(second), is(true));
+
+		Iterator<Marker> references = root.iterator();
+
+		assertThat(references.next(), is(sameInstance(first)));
+		assertThat(references.next(), is(sameInstance(second)));
+		assertThat(references.hasNext(), is(false));
+		assertThat(root.toString(), is("ROOT [ FIRST, SECOND ]"));
+	}
+
+	@Test
+	public void duplicatesAreIgnored() {
+		ConcordionMarker root = new ConcordionMarker("ROOT");
+		ConcordionMarker child = new ConcordionMarker("CHILD");
+		child.add(new ConcordionMarker("GRANDCHILD"));
+
+		assertThat(root.addReference(child), is(true));
+		assertThat(root.addReference(child), is(false));
+		assertThat(root.addReference(new ConcordionMarker("CHILD")), is(false));
+		assertThat(root.addReference(new ConcordionMarker("GRANDCHILD")), is(false));
+		assertThat(root.addReference(new ConcordionMarker("ROOT")), is(false));
+	}
+
+	@Test
+	public void cyclesAreNotCreated() {
+		ConcordionMarker parent = new ConcordionMarker("PARENT");
+		ConcordionMarker child = new ConcordionMarker("CHILD");
+
+		parent.add(child);
+
+		assertThat(child.addReference(parent), is(false));
+		assertThat(child.hasReferences(), is(false));
+	}
+
+	@Test
+	public void honoursMarkerContract() {
+		ConcordionMarker root = new ConcordionMarker("ROOT");
+		Marker child = MarkerFactory.getDetachedMarker("CHILD");
+		child.add(MarkerFactory.getDetachedMarker("GRANDCHILD"));
+		root.add(child);
+
+		assertThat(root.contains("GRANDCHILD"), is(true));
+		assertThat(root.contains(MarkerFactory.getDetachedMarker("CHILD")), is(true));
+		assertThat(root.contains("OTHER"), is(false));
+		assertThat(root.equals(MarkerFactory.getDetachedMarker("ROOT")), is(true));
+		assertThat(root.hashCode(), is("ROOT".hashCode()));
+
+		assertThat(root.remove(child), is(true));
+		assertThat(root.hasReferences(), is(false));
+		assertThat(root.contains("CHILD"), is(false));
+	}
+}